@@ -3,9 +3,18 @@ package de.tschebbischeff.lazyui;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
 import android.view.View;
-import android.widget.TextView;
+import android.view.ViewTreeObserver;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
 
 /**
  * Superclass containing callbacks for changing content screens.
@@ -13,9 +22,20 @@ import android.widget.TextView;
 public abstract class ContentPage {
 
     /**
-     * The activity managing this content screen
+     * The activity managing this content screen.
+     * Only weakly referenced, so content pages kept past the activity's lifetime do not retain it.
+     */
+    private WeakReference<Activity> activity = new WeakReference<>(null);
+
+    /**
+     * The library this content page was added to
+     */
+    private ContentPageLibrary contentPageLibrary = null;
+
+    /**
+     * The recycler views of the shown layout, which use the library's shared view pool
      */
-    private Activity activity = null;
+    private ArrayList<RecyclerView> sharedPoolRecyclerViews = new ArrayList<>();
 
     /**
      * The class acting as an interface between the contents. Can store and retreive defined data.
@@ -28,29 +48,66 @@ public abstract class ContentPage {
     private boolean active = false;
 
     /**
-     * The title of the error message to be shown to the user
+     * The error to be shown to the user instead of this content, null if there is no error
+     */
+    private ContentPageError error = null;
+
+    /**
+     * Whether the error is only shown once and cleared automatically afterwards
+     */
+    private boolean errorOneShot = false;
+
+    /**
+     * Whether the error page is shown instead of the contents layout. Stays set after a one-shot error was cleared automatically,
+     * until the contents layout is shown again.
+     */
+    private boolean errorShown = false;
+
+    /**
+     * The lazy regions of this content page's layout by name, in order of declaration
+     */
+    private LinkedHashMap<String, ContentPageRegion> lazyRegions = new LinkedHashMap<>();
+
+    /**
+     * The ids of the views marked dirty since the last refresh
      */
-    private String errorTitle = null;
+    private HashSet<Integer> dirtyViewIds = new HashSet<>();
 
     /**
-     * The error message to be shown to the user
+     * The names of the lazy regions marked dirty since the last refresh
      */
-    private String errorMessage = null;
+    private HashSet<String> dirtyLazyRegions = new HashSet<>();
 
     /**
-     * The layout in which to display the error message
+     * The view tree observer on which the scroll listener for lazy regions is registered, while this content is shown
      */
-    private static final int ERROR_LAYOUT_ID = R.layout.content_page_error;
+    private ViewTreeObserver lazyRegionTreeObserver = null;
 
     /**
-     * The id of the text view containing the error title
+     * Inflates lazy regions which are scrolled into view, until no such region is pending anymore
      */
-    private static final int ERROR_TITLE_TV_ID = R.id.content_page_error_title;
+    private final ViewTreeObserver.OnScrollChangedListener lazyRegionScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            if (!ContentPage.this.expandVisibleLazyRegions()) {
+                ContentPage.this.unwatchLazyRegionScrolling();
+            }
+        }
+    };
 
     /**
-     * The id of the text view containing the error message
+     * Inflates visible lazy regions and prefetches one idle-time lazy region per idle pass of the main thread
      */
-    private static final int ERROR_MESSAGE_TV_ID = R.id.content_page_error_message;
+    private final MessageQueue.IdleHandler lazyRegionIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (!ContentPage.this.isActive()) return false;
+            if (!ContentPage.this.expandVisibleLazyRegions()) {
+                ContentPage.this.unwatchLazyRegionScrolling();
+            }
+            return ContentPage.this.prefetchLazyRegion();
+        }
+    };
 
     /**
      * Child classes can determine via this method if they are (still) the currently shown content.
@@ -61,10 +118,11 @@ public abstract class ContentPage {
     }
 
     /**
-     * Child classes can get the instance of the activity that manages these contents. May be null if {@link ContentPage#isActive()} returns false.
+     * Child classes can get the instance of the activity that manages these contents. May be null if {@link ContentPage#isActive()} returns false
+     * or the activity was destroyed.
      */
     Activity getActivity() {
-        return this.activity;
+        return this.activity.get();
     }
 
     /**
@@ -74,12 +132,196 @@ public abstract class ContentPage {
         return this.contentPageSharedData;
     }
 
+    /**
+     * Child classes can let a recycler view of their layout use the view pool shared by all content pages of the library.
+     * Should be called in {@link ContentPage#onAfterShow()}, before an adapter is set.
+     * The view holders of the recycler view are returned to the shared pool when this content is hidden.
+     */
+    void useSharedViewPool(RecyclerView recyclerView) {
+        if (this.contentPageLibrary == null) return;
+        recyclerView.setRecycledViewPool(this.contentPageLibrary.getSharedViewPool());
+        this.sharedPoolRecyclerViews.add(recyclerView);
+    }
+
+    /**
+     * Child classes can mark a view of their layout dirty, e.g. when the data it displays changed.
+     * All views and lazy regions marked dirty within one frame are refreshed together in {@link ContentPage#onRefresh(Set, Set)}.
+     * Does nothing if this content is not currently shown, as its layout is refreshed when it is shown again.
+     * Must be called on the main thread, post data changes arriving on other threads to the main thread first.
+     */
+    void markViewDirty(int viewId) {
+        if (!this.isActive()) return;
+        this.dirtyViewIds.add(viewId);
+        this.requestRefresh();
+    }
+
+    /**
+     * Child classes can mark a lazy region dirty, e.g. when the data it displays changed.
+     * Only inflated lazy regions are refreshed, as pending regions get the current data when they are inflated.
+     * Does nothing if this content is not currently shown, as its layout is refreshed when it is shown again.
+     * Must be called on the main thread, post data changes arriving on other threads to the main thread first.
+     */
+    void markLazyRegionDirty(String name) {
+        if (!this.isActive()) return;
+        this.dirtyLazyRegions.add(name);
+        this.requestRefresh();
+    }
+
+    /**
+     * Requests a refresh pass from the library, which batches the requests of all contents into one pass per frame.
+     */
+    private void requestRefresh() {
+        if (this.contentPageLibrary != null) {
+            this.contentPageLibrary.dispatchOnRefreshRequested(this);
+        }
+    }
+
     /**
      * Child classes can set an error to display automatically instead of the contents layout.
+     * The error is only displayed once, the next time this content is shown its layout is displayed again.
+     * If this content is currently shown, its layout is swapped for the error page in place, until {@link ContentPage#clearError()}
+     * is called or this content is shown again.
      */
     void setError(String title, String message) {
-        this.errorTitle = title;
-        this.errorMessage = message;
+        this.setError(new ContentPageError(title, message), true);
+    }
+
+    /**
+     * Child classes can set an error to display automatically instead of the contents layout.
+     * The error is displayed until it is cleared via {@link ContentPage#clearError()}.
+     * If this content is currently shown, its layout is swapped for the error page in place.
+     */
+    void setError(ContentPageError error) {
+        this.setError(error, false);
+    }
+
+    /**
+     * Sets the error to display instead of the contents layout.
+     * @param oneShot Whether the error is cleared automatically once it was displayed
+     */
+    private void setError(ContentPageError error, boolean oneShot) {
+        this.error = error;
+        this.errorOneShot = oneShot;
+        if (this.isActive() && this.contentPageLibrary != null) {
+            this.contentPageLibrary.dispatchOnErrorChanged(this);
+        }
+    }
+
+    /**
+     * Child classes can clear a previously set error once they recovered.
+     * If this content is currently shown, the error page is swapped for the contents layout in place.
+     */
+    void clearError() {
+        if (this.error == null && !this.errorShown) return;
+        this.error = null;
+        this.errorOneShot = false;
+        if (this.isActive() && this.contentPageLibrary != null) {
+            this.contentPageLibrary.dispatchOnErrorChanged(this);
+        }
+    }
+
+    /**
+     * Child classes can declare a named region of their layout, which is backed by a {@link android.view.ViewStub} and only inflated on demand.
+     * Should be called in {@link ContentPage#onCreate()}. Replaces any region previously declared with the same name.
+     */
+    void addLazyRegion(String name, ContentPageRegion region) {
+        this.lazyRegions.put(name, region);
+    }
+
+    /**
+     * Child classes can get a previously declared lazy region by its name. May be null if no such region was declared.
+     */
+    ContentPageRegion getLazyRegion(String name) {
+        return this.lazyRegions.get(name);
+    }
+
+    /**
+     * Child classes can inflate a lazy region, e.g. when a collapsed panel is first expanded.
+     * Does nothing if the region is already inflated.
+     *
+     * @return True if the region is inflated after this call, False if there is no such region in the shown layout
+     */
+    boolean expandLazyRegion(String name) {
+        ContentPageRegion region = this.lazyRegions.get(name);
+        return region != null && this.isActive() && region.dispatchExpand();
+    }
+
+    /**
+     * Inflates all pending lazy regions that inflate when visible and are scrolled into view.
+     *
+     * @return True if there are pending lazy regions left, that inflate when visible
+     */
+    private boolean expandVisibleLazyRegions() {
+        boolean pending = false;
+        for (ContentPageRegion region : this.lazyRegions.values()) {
+            if (region.hasInflateTrigger(ContentPageRegion.INFLATE_WHEN_VISIBLE) && region.isPending()) {
+                if (region.isStubInView()) {
+                    region.dispatchExpand();
+                } else {
+                    pending = true;
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Inflates the first pending lazy region that inflates at idle time.
+     *
+     * @return True if there are pending lazy regions left to prefetch
+     */
+    private boolean prefetchLazyRegion() {
+        boolean expanded = false;
+        for (ContentPageRegion region : this.lazyRegions.values()) {
+            if (region.hasInflateTrigger(ContentPageRegion.INFLATE_WHEN_IDLE) && region.isPending()) {
+                if (expanded) return true;
+                region.dispatchExpand();
+                expanded = true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the idle handler inflating lazy regions, if any region is still pending,
+     * and the scroll listener, if any of them inflates when visible.
+     */
+    private void watchLazyRegions(View contentView) {
+        boolean pendingWhenVisible = false;
+        boolean pendingWhenIdle = false;
+        for (ContentPageRegion region : this.lazyRegions.values()) {
+            if (region.isPending()) {
+                pendingWhenVisible |= region.hasInflateTrigger(ContentPageRegion.INFLATE_WHEN_VISIBLE);
+                pendingWhenIdle |= region.hasInflateTrigger(ContentPageRegion.INFLATE_WHEN_IDLE);
+            }
+        }
+        if (pendingWhenVisible) {
+            this.lazyRegionTreeObserver = contentView.getViewTreeObserver();
+            this.lazyRegionTreeObserver.addOnScrollChangedListener(this.lazyRegionScrollListener);
+        }
+        if (pendingWhenVisible || pendingWhenIdle) {
+            Looper.myQueue().addIdleHandler(this.lazyRegionIdleHandler);
+        }
+    }
+
+    /**
+     * Unregisters the scroll listener and idle handler inflating lazy regions.
+     */
+    private void unwatchLazyRegions() {
+        this.unwatchLazyRegionScrolling();
+        Looper.myQueue().removeIdleHandler(this.lazyRegionIdleHandler);
+    }
+
+    /**
+     * Unregisters the scroll listener inflating lazy regions, e.g. once all regions inflating when visible are inflated.
+     */
+    private void unwatchLazyRegionScrolling() {
+        if (this.lazyRegionTreeObserver != null) {
+            if (this.lazyRegionTreeObserver.isAlive()) {
+                this.lazyRegionTreeObserver.removeOnScrollChangedListener(this.lazyRegionScrollListener);
+            }
+            this.lazyRegionTreeObserver = null;
+        }
     }
 
     /**
@@ -87,13 +329,54 @@ public abstract class ContentPage {
      * May instead return an error page if the underlying child class reported an error to this parenting class.
      */
     public int dispatchGetLayoutResourceId() {
-        if (this.errorTitle == null) {
+        if (this.error == null) {
             return this.getLayoutResourceId();
         } else {
-            return ERROR_LAYOUT_ID;
+            return ContentPageErrorView.ERROR_LAYOUT_ID;
         }
     }
 
+    /**
+     * Dispatches the request for the error to display instead of the contents layout.
+     * @return The error reported by the underlying child class, null if there is no error
+     */
+    public ContentPageError dispatchGetError() {
+        return this.error;
+    }
+
+    /**
+     * Dispatches the request for the adapter used to pre-create view holders for the shared view pool.
+     */
+    public RecyclerView.Adapter dispatchGetPrewarmAdapter() {
+        return this.getPrewarmAdapter();
+    }
+
+    /**
+     * Dispatches the request for the view types to pre-create view holders for.
+     */
+    public int[] dispatchGetPrewarmViewTypes() {
+        return this.getPrewarmViewTypes();
+    }
+
+    /**
+     * Dispatches the attachment to the library this content page is added to.
+     */
+    void dispatchOnAttach(ContentPageLibrary contentPageLibrary) {
+        this.contentPageLibrary = contentPageLibrary;
+    }
+
+    /**
+     * Returns the view holders of all recycler views using the shared view pool to the pool.
+     * Must be called before the views of this content are removed.
+     */
+    public void dispatchRecycleSharedViews() {
+        for (RecyclerView recyclerView : this.sharedPoolRecyclerViews) {
+            //Swapping keeps the shared pool's contents, whereas setting a null adapter may clear the pool
+            recyclerView.swapAdapter(null, true);
+        }
+        this.sharedPoolRecyclerViews.clear();
+    }
+
     /**
      * Dispatches the request for intent filter actions to the corresponding child.
      * @return The intent filter actions this content is interested in
@@ -107,7 +390,7 @@ public abstract class ContentPage {
      */
     public void dispatchOnCreate(ContentPageSharedData contentPageSharedData, Activity activity) {
         this.contentPageSharedData = contentPageSharedData;
-        this.activity = activity;
+        this.activity = new WeakReference<>(activity);
         this.onCreate();
     }
 
@@ -121,17 +404,44 @@ public abstract class ContentPage {
     }
 
     /**
-     * Dispatches the after show task to the corresponding child.
+     * Dispatches that the error was displayed to the user, clearing it if it is only shown once.
+     */
+    public void dispatchOnErrorShown() {
+        this.errorShown = true;
+        if (this.errorOneShot) {
+            this.error = null;
+            this.errorOneShot = false;
+        }
+    }
+
+    /**
+     * Dispatches that the error page was swapped for the retained contents layout in place.
      */
-    public void dispatchOnAfterShow() {
+    public void dispatchOnErrorHidden() {
+        this.errorShown = false;
+    }
+
+    /**
+     * Dispatches the after show task to the corresponding child, unless an error is shown instead of the contents layout.
+     * Lazy regions are bound to the stubs of the shown layout beforehand, they are inflated again after each show.
+     *
+     * @param contentView The view the layout of this content was inflated into, may be null if nothing was inflated
+     */
+    public void dispatchOnAfterShow(View contentView) {
         this.active = true;
-        if (this.errorTitle != null) {
-            ((TextView) this.getActivity().findViewById(ERROR_TITLE_TV_ID)).setText(this.errorTitle);
-            ((TextView) this.getActivity().findViewById(ERROR_MESSAGE_TV_ID)).setText(this.errorMessage);
-            this.errorTitle = null;
-            this.errorMessage = null;
-        } else {
+        if (this.error == null) {
+            this.errorShown = false;
+            if (contentView != null) {
+                for (ContentPageRegion region : this.lazyRegions.values()) {
+                    region.dispatchOnAfterShow(contentView);
+                }
+            }
             this.onAfterShow();
+            if (contentView != null) {
+                this.watchLazyRegions(contentView);
+            }
+        } else {
+            this.dispatchOnErrorShown();
         }
     }
 
@@ -149,15 +459,53 @@ public abstract class ContentPage {
      */
     public void dispatchOnAfterHide() {
         this.active = false;
+        this.errorShown = false;
+        this.dirtyViewIds.clear();
+        this.dirtyLazyRegions.clear();
+        this.unwatchLazyRegions();
+        for (ContentPageRegion region : this.lazyRegions.values()) {
+            region.dispatchOnAfterHide();
+        }
         this.onAfterHide();
     }
 
+    /**
+     * Dispatches the refresh task with all views and inflated lazy regions marked dirty since the last refresh to the corresponding child.
+     * Does nothing if this content is not shown, shows an error instead of its layout, or nothing was marked dirty.
+     */
+    public void dispatchOnRefresh() {
+        if (!this.active || this.error != null || this.errorShown) {
+            this.dirtyViewIds.clear();
+            this.dirtyLazyRegions.clear();
+            return;
+        }
+        HashSet<Integer> dirtyViewIds = this.dirtyViewIds;
+        HashSet<String> dirtyLazyRegions = new HashSet<>();
+        for (String name : this.dirtyLazyRegions) {
+            ContentPageRegion region = this.lazyRegions.get(name);
+            if (region != null && region.isInflated()) {
+                dirtyLazyRegions.add(name);
+            }
+        }
+        this.dirtyViewIds = new HashSet<>();
+        this.dirtyLazyRegions.clear();
+        if (!dirtyViewIds.isEmpty() || !dirtyLazyRegions.isEmpty()) {
+            this.onRefresh(dirtyViewIds, dirtyLazyRegions);
+        }
+    }
+
     /**
      * Dispatches the destroy task to the corresponding child.
      */
     public void dispatchOnDestroy() {
-        this.activity = null;
+        this.unwatchLazyRegions();
+        this.activity.clear();
         this.contentPageSharedData = null;
+        this.contentPageLibrary = null;
+        this.sharedPoolRecyclerViews.clear();
+        for (ContentPageRegion region : this.lazyRegions.values()) {
+            region.dispatchOnDestroy();
+        }
         this.onDestroy();
     }
 
@@ -174,6 +522,24 @@ public abstract class ContentPage {
      */
     protected abstract String[] getIntentFilterActions();
 
+    /**
+     * Defines the adapter used to pre-create view holders for the library's shared view pool at idle time.
+     *
+     * @return The adapter creating this content's view holders, or null if this content does not use the shared view pool
+     */
+    protected RecyclerView.Adapter getPrewarmAdapter() {
+        return null;
+    }
+
+    /**
+     * Defines the view types to pre-create view holders for, up to the sizes set for the library's shared view pool.
+     *
+     * @return An array of view types, that the adapter returned by {@link ContentPage#getPrewarmAdapter()} creates
+     */
+    protected int[] getPrewarmViewTypes() {
+        return new int[0];
+    }
+
     /**
      * Called during the activity's lifecycle's onCreate.
      */
@@ -182,6 +548,8 @@ public abstract class ContentPage {
     /**
      * Called when this content is about to be shown.
      * The layout of this content is not yet inflated at this point.
+     * When shown together with other contents via {@link ContentPageLibrary#showPanes(java.util.Map, Activity)},
+     * this is called on a worker thread, concurrently to the other contents, after the previously shown contents of all panes were hidden.
      *
      * @return True if successful
      */
@@ -212,6 +580,16 @@ public abstract class ContentPage {
      */
     protected abstract void onDestroy();
 
+    /**
+     * Called once per frame while this content is shown, if views or lazy regions were marked dirty.
+     * Only the dirty parts of the layout need to be updated, the layout is neither re-inflated nor hidden.
+     *
+     * @param dirtyViewIds     The ids of the views marked dirty via {@link ContentPage#markViewDirty(int)}
+     * @param dirtyLazyRegions The names of the inflated lazy regions marked dirty via {@link ContentPage#markLazyRegionDirty(String)}
+     */
+    protected void onRefresh(Set<Integer> dirtyViewIds, Set<String> dirtyLazyRegions) {
+    }
+
     /**
      * Called when a view in this content's layout is clicked.
      */
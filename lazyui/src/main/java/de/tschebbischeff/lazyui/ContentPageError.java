@@ -0,0 +1,73 @@
+package de.tschebbischeff.lazyui;
+
+/**
+ * Describes an error, that a {@link ContentPage} displays instead of its contents.
+ */
+public class ContentPageError {
+
+    /**
+     * The error code of errors without an error code
+     */
+    public static final int NO_ERROR_CODE = 0;
+
+    /**
+     * The title of the error message to be shown to the user
+     */
+    private final String title;
+
+    /**
+     * The error message to be shown to the user
+     */
+    private final String message;
+
+    /**
+     * The error code to be shown to the user, or {@link #NO_ERROR_CODE}
+     */
+    private final int errorCode;
+
+    /**
+     * The action run when the user chooses to retry, may be null if the error can not be retried
+     */
+    private final Runnable retryAction;
+
+    /**
+     * Create a new error without error code and retry action.
+     *
+     * @param title   The title of the error message to be shown to the user
+     * @param message The error message to be shown to the user
+     */
+    public ContentPageError(String title, String message) {
+        this(title, message, NO_ERROR_CODE, null);
+    }
+
+    /**
+     * Create a new error.
+     *
+     * @param title       The title of the error message to be shown to the user
+     * @param message     The error message to be shown to the user
+     * @param errorCode   The error code to be shown to the user, or {@link #NO_ERROR_CODE}
+     * @param retryAction The action run when the user chooses to retry, null if the error can not be retried
+     */
+    public ContentPageError(String title, String message, int errorCode, Runnable retryAction) {
+        this.title = title;
+        this.message = message;
+        this.errorCode = errorCode;
+        this.retryAction = retryAction;
+    }
+
+    public String getTitle() {
+        return this.title;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    public int getErrorCode() {
+        return this.errorCode;
+    }
+
+    public Runnable getRetryAction() {
+        return this.retryAction;
+    }
+}
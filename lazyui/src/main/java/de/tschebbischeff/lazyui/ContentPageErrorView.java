@@ -0,0 +1,93 @@
+package de.tschebbischeff.lazyui;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+/**
+ * The error page shown instead of a {@link ContentPage}'s contents. Inflated once and rebound to each displayed error.
+ */
+class ContentPageErrorView {
+
+    /**
+     * The layout in which to display the error message
+     */
+    static final int ERROR_LAYOUT_ID = R.layout.content_page_error;
+
+    /**
+     * The root view of the error page
+     */
+    private final View view;
+
+    /**
+     * The text view containing the error title
+     */
+    private final TextView titleView;
+
+    /**
+     * The text view containing the error message
+     */
+    private final TextView messageView;
+
+    /**
+     * The text view containing the error code
+     */
+    private final TextView errorCodeView;
+
+    /**
+     * The button running the error's retry action
+     */
+    private final Button retryButton;
+
+    /**
+     * The error currently bound to this view
+     */
+    private ContentPageError error = null;
+
+    /**
+     * Inflates the error page, without attaching it to the parent.
+     *
+     * @param layoutInflater The layout inflater to use for inflating the error page
+     * @param parent         The view group the error page is going to be shown in
+     */
+    ContentPageErrorView(LayoutInflater layoutInflater, ViewGroup parent) {
+        this.view = layoutInflater.inflate(ERROR_LAYOUT_ID, parent, false);
+        this.titleView = (TextView) this.view.findViewById(R.id.content_page_error_title);
+        this.messageView = (TextView) this.view.findViewById(R.id.content_page_error_message);
+        this.errorCodeView = (TextView) this.view.findViewById(R.id.content_page_error_code);
+        this.retryButton = (Button) this.view.findViewById(R.id.content_page_error_retry);
+        this.retryButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (ContentPageErrorView.this.error != null && ContentPageErrorView.this.error.getRetryAction() != null) {
+                    ContentPageErrorView.this.error.getRetryAction().run();
+                }
+            }
+        });
+    }
+
+    /**
+     * The root view of the error page.
+     */
+    View getView() {
+        return this.view;
+    }
+
+    /**
+     * Displays the given error in this view.
+     */
+    void bind(ContentPageError error) {
+        this.error = error;
+        this.titleView.setText(error.getTitle());
+        this.messageView.setText(error.getMessage());
+        if (error.getErrorCode() != ContentPageError.NO_ERROR_CODE) {
+            this.errorCodeView.setText(this.view.getContext().getString(R.string.content_page_error_code, error.getErrorCode()));
+            this.errorCodeView.setVisibility(View.VISIBLE);
+        } else {
+            this.errorCodeView.setVisibility(View.GONE);
+        }
+        this.retryButton.setVisibility(error.getRetryAction() != null ? View.VISIBLE : View.GONE);
+    }
+}
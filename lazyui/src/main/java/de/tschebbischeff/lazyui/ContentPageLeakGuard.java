@@ -0,0 +1,140 @@
+package de.tschebbischeff.lazyui;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Detects content pages, layouts and activities that are still reachable after their owning activity was destroyed.
+ * Should outlive the activities it watches, e.g. by being kept in the application.
+ * Provide an instance of this class to {@link ContentPageLibrary#setLeakGuard(ContentPageLeakGuard)}.
+ */
+public class ContentPageLeakGuard {
+
+    /**
+     * To be notified about detected leaks you will need to implement this interface.
+     * The listener is called on the thread running {@link ContentPageLeakGuard#check()}, which for checks scheduled by the
+     * {@link ContentPageLibrary} is a background thread. Post to the main thread before touching the UI, e.g. to show a toast.
+     */
+    public interface OnLeakDetectedListener {
+
+        /**
+         * This method is called for every watched object that is still reachable after garbage collection.
+         * May be called on a background thread.
+         * @param menuItemResourceId The id of the menu item, the leaked object belongs to
+         * @param referenceName A human readable name of the leaked object
+         * @param retainedSizeEstimate The estimated number of bytes retained by the leaked object
+         */
+        void onLeakDetected(int menuItemResourceId, String referenceName, long retainedSizeEstimate);
+    }
+
+    /**
+     * A weak reference to a watched object, carrying the information to report if it leaks.
+     */
+    private static final class WatchedReference extends WeakReference<Object> {
+
+        private final int menuItemResourceId;
+        private final String referenceName;
+        private final long retainedSizeEstimate;
+
+        WatchedReference(Object referent, ReferenceQueue<Object> referenceQueue, int menuItemResourceId, String referenceName, long retainedSizeEstimate) {
+            super(referent, referenceQueue);
+            this.menuItemResourceId = menuItemResourceId;
+            this.referenceName = referenceName;
+            this.retainedSizeEstimate = retainedSizeEstimate;
+        }
+    }
+
+    /**
+     * The time to wait for the garbage collector to enqueue references, in milliseconds
+     */
+    private static final long GC_ENQUEUE_DELAY_MS = 100;
+
+    /**
+     * The queue on which references of collected objects are enqueued
+     */
+    private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<>();
+
+    /**
+     * All references to objects which are watched and not yet collected
+     */
+    private final HashSet<WatchedReference> watchedReferences = new HashSet<>();
+
+    /**
+     * The listener to report detected leaks to
+     */
+    private final OnLeakDetectedListener listener;
+
+    /**
+     * Create a new leak guard.
+     * @param listener The listener to report detected leaks to
+     */
+    public ContentPageLeakGuard(OnLeakDetectedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts watching an object, that is expected to become unreachable.
+     * @param watched The object to watch
+     * @param menuItemResourceId The id of the menu item, the object belongs to
+     * @param referenceName A human readable name of the object
+     * @param retainedSizeEstimate The estimated number of bytes retained by the object
+     */
+    public synchronized void watch(Object watched, int menuItemResourceId, String referenceName, long retainedSizeEstimate) {
+        this.removeCollectedReferences();
+        this.watchedReferences.add(new WatchedReference(watched, this.referenceQueue, menuItemResourceId, referenceName, retainedSizeEstimate));
+    }
+
+    /**
+     * Gets the number of watched objects, that were not yet collected or reported.
+     */
+    public synchronized int getWatchedCount() {
+        this.removeCollectedReferences();
+        return this.watchedReferences.size();
+    }
+
+    /**
+     * Checks all watched objects, triggering a garbage collection if any of them is still reachable.
+     * Objects that are still reachable afterwards are reported to the listener once and no longer watched.
+     * @return The number of detected leaks
+     */
+    public synchronized int check() {
+        this.removeCollectedReferences();
+        if (this.watchedReferences.isEmpty()) return 0;
+        this.runGc();
+        this.removeCollectedReferences();
+        ArrayList<WatchedReference> leakedReferences = new ArrayList<>(this.watchedReferences);
+        this.watchedReferences.clear();
+        for (WatchedReference leakedReference : leakedReferences) {
+            leakedReference.clear();
+            this.listener.onLeakDetected(leakedReference.menuItemResourceId, leakedReference.referenceName, leakedReference.retainedSizeEstimate);
+        }
+        return leakedReferences.size();
+    }
+
+    /**
+     * Removes the references of all collected objects from the watched references.
+     */
+    private void removeCollectedReferences() {
+        Reference<?> reference;
+        while ((reference = this.referenceQueue.poll()) != null) {
+            this.watchedReferences.remove(reference);
+        }
+    }
+
+    /**
+     * Requests a garbage collection and gives the collector time to enqueue the references of collected objects.
+     * System.gc() alone does not reliably collect on all runtimes.
+     */
+    private void runGc() {
+        Runtime.getRuntime().gc();
+        try {
+            Thread.sleep(GC_ENQUEUE_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.runFinalization();
+    }
+}
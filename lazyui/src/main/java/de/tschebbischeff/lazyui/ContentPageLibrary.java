@@ -4,34 +4,72 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.annotation.NonNull;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.widget.LinearLayout;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class provides the API for the LazyUI by storing {@link ContentPage}s with an associated menu item.
  * The menu item is saved by layout ID.
+ * Content pages are shown in named panes, each showing one content page at a time. Without further panes,
+ * all content pages are shown in the {@link #DEFAULT_PANE}.
  */
 public class ContentPageLibrary {
 
+    /**
+     * The name of the pane wrapping the linear layout, which is passed to the constructor
+     */
+    public static final String DEFAULT_PANE = "default";
+
     /**
      * All content pages accessible by the corresponding menu items id
      */
     private HashMap<Integer, ContentPage> contentPages;
     /**
-     * The id of the currently shown content, to manage callbacks.
+     * All panes by their names, in order of addition
+     */
+    private LinkedHashMap<String, ContentPagePane> panes;
+    /**
+     * The panes whose shown content pages receive an intent action, by intent action
+     */
+    private HashMap<String, ArrayList<ContentPagePane>> panesByAction;
+    /**
+     * The executor preparing multiple panes concurrently, created on first use
      */
-    private int selectedContent = 0;
+    private ExecutorService preparationExecutor = null;
     /**
-     * The linear layout in which the content pages are inflated.
+     * The executor pre-inflating the layouts of prepared panes one after another, created on first use.
+     * Layout inflation is not thread-safe, as the inflaters share static caches of view constructors.
      */
-    private LinearLayout contentWrapper = null;
+    private ExecutorService inflationExecutor = null;
     /**
      * The layout inflater to use for inflating the content pages.
+     * Cleared when the activity is destroyed, to not retain the activity.
      */
     private LayoutInflater layoutInflater = null;
     /**
@@ -42,21 +80,312 @@ public class ContentPageLibrary {
      * The class defining which data can be shared between the content pages
      */
     private ContentPageSharedData contentPageSharedData = null;
+    /**
+     * The view pool shared by the recycler views of all content pages opting into it
+     */
+    private RecyclerView.RecycledViewPool sharedViewPool = null;
+    /**
+     * The maximum number of view holders in the shared view pool by view type, as set by the user
+     */
+    private SparseIntArray sharedViewPoolSizes = null;
+    /**
+     * The parent used to create view holders ahead of time, created on first use
+     */
+    private RecyclerView prewarmParent = null;
+    /**
+     * The content page of which view holders are created ahead of time, null if there is nothing to prewarm
+     */
+    private ContentPage prewarmPage = null;
+    /**
+     * The content pages which requested a refresh since the last refresh pass, in order of request
+     */
+    private LinkedHashSet<ContentPage> dirtyPages = new LinkedHashSet<>();
+    /**
+     * The handler of the main thread, posting refresh passes if no content wrapper is attached
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Whether a refresh pass is already scheduled for the next frame
+     */
+    private boolean refreshScheduled = false;
+    /**
+     * Refreshes all content pages which requested a refresh, in one pass
+     */
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ContentPageLibrary.this.refreshScheduled = false;
+            ArrayList<ContentPage> pages = new ArrayList<>(ContentPageLibrary.this.dirtyPages);
+            ContentPageLibrary.this.dirtyPages.clear();
+            for (ContentPage page : pages) {
+                page.dispatchOnRefresh();
+            }
+        }
+    };
+    /**
+     * The guard detecting content pages and layouts still reachable after the activity is destroyed, null if disabled
+     */
+    private ContentPageLeakGuard leakGuard = null;
+    /**
+     * The delay after the activity is destroyed, after which the leak guard checks for leaks, in milliseconds
+     */
+    private static final long LEAK_CHECK_DELAY_MS = 5000;
+    /**
+     * A rough estimate of the number of bytes retained per view of a leaked view tree
+     */
+    private static final long ESTIMATED_BYTES_PER_VIEW = 2048;
+    /**
+     * A rough estimate of the number of bytes of an object's header
+     */
+    private static final long ESTIMATED_BYTES_PER_OBJECT_HEADER = 16;
+    /**
+     * A rough estimate of the number of bytes per field of an object
+     */
+    private static final long ESTIMATED_BYTES_PER_FIELD = 8;
+    /**
+     * The background thread on which the leak guards check for leaks, as checking forces a garbage collection.
+     * Shared by all libraries and started on first use.
+     */
+    private static HandlerThread leakCheckThread = null;
+    /**
+     * Creates one view holder for the shared view pool per idle pass of the main thread
+     */
+    private final MessageQueue.IdleHandler prewarmIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (ContentPageLibrary.this.prewarmPage != null && ContentPageLibrary.this.prewarmViewHolder(ContentPageLibrary.this.prewarmPage)) {
+                return true;
+            }
+            ContentPageLibrary.this.prewarmPage = null;
+            return false;
+        }
+    };
+
+    /**
+     * The state of a pane while it is prepared for showing another content page.
+     */
+    private static class PanePreparation {
+
+        private final ContentPagePane pane;
+        private final LinearLayout contentWrapper;
+        private final int menuItemResourceId;
+        private final ContentPage currentPage;
+        private final ContentPage nextPage;
+        private boolean accepted = true;
+        private boolean prepared = false;
+        private View preinflatedView = null;
+
+        PanePreparation(ContentPagePane pane, LinearLayout contentWrapper, int menuItemResourceId, ContentPage currentPage, ContentPage nextPage) {
+            this.pane = pane;
+            this.contentWrapper = contentWrapper;
+            this.menuItemResourceId = menuItemResourceId;
+            this.currentPage = currentPage;
+            this.nextPage = nextPage;
+        }
+
+        /**
+         * Dispatches the before show task to the next content page and inflates its layout on the inflation executor, without attaching it.
+         * Called on a worker thread.
+         */
+        void prepare(final LayoutInflater layoutInflater, ExecutorService inflationExecutor) throws InterruptedException {
+            this.prepared = this.nextPage.dispatchOnBeforeShow(false);
+            if (this.prepared && this.nextPage.dispatchGetError() == null) {
+                final int layoutResourceId = this.nextPage.dispatchGetLayoutResourceId();
+                final LinearLayout contentWrapper = this.contentWrapper;
+                try {
+                    this.preinflatedView = inflationExecutor.submit(new Callable<View>() {
+                        @Override
+                        public View call() throws Exception {
+                            return layoutInflater.inflate(layoutResourceId, contentWrapper, false);
+                        }
+                    }).get();
+                } catch (ExecutionException e) {
+                    //Not every layout can be inflated off the main thread or without attaching (e.g. merge), inflate it when attaching instead
+                    this.preinflatedView = null;
+                }
+            }
+        }
+    }
 
     /**
      * Create a new library of content pages.
      *
-     * @param contentWrapperLayout The linear layout which should contain the lazy UI.
+     * @param contentWrapperLayout The linear layout which should contain the lazy UI, used as the {@link #DEFAULT_PANE}.
      *                             (All content is removed from this layout before the content pages are shown)
      */
     @SuppressLint("UseSparseArrays")
     public ContentPageLibrary(LinearLayout contentWrapperLayout, LayoutInflater layoutInflater, ContentPageSharedData contentPageSharedData, ILazyUiCallbacks callbackHandler) {
         this.contentPages = new HashMap<>();
         this.contentPages.put(0, new ContentPageEmpty());
-        this.contentWrapper = contentWrapperLayout;
+        this.panes = new LinkedHashMap<>();
+        this.panes.put(DEFAULT_PANE, new ContentPagePane(DEFAULT_PANE, contentWrapperLayout, this.contentPages.get(0)));
+        this.panesByAction = new HashMap<>();
         this.layoutInflater = layoutInflater;
         this.contentPageSharedData = contentPageSharedData;
         this.callbackHandler = callbackHandler;
+        this.sharedViewPool = new RecyclerView.RecycledViewPool();
+        this.sharedViewPoolSizes = new SparseIntArray();
+    }
+
+    /**
+     * Adds a further pane, in which content pages can be shown alongside the content pages of the other panes.
+     * Replaces any pane previously added with the same name. The {@link #DEFAULT_PANE} can not be replaced.
+     * The pane shows no content page until one is shown via {@link #show(String, int, Activity)}.
+     * @param paneName The name of the pane
+     * @param contentWrapperLayout The linear layout which should contain the content pages of this pane.
+     *                             (All content is removed from this layout before the content pages are shown)
+     */
+    public void addPane(String paneName, LinearLayout contentWrapperLayout) {
+        if (DEFAULT_PANE.equals(paneName)) return;
+        removePane(paneName);
+        this.panes.put(paneName, new ContentPagePane(paneName, contentWrapperLayout, new ContentPageEmpty()));
+    }
+
+    /**
+     * Removes a pane, hiding its shown content page. The {@link #DEFAULT_PANE} can not be removed.
+     * Fails silently (if there was no such pane before)
+     * @param paneName The name of the pane
+     */
+    public void removePane(String paneName) {
+        ContentPagePane pane = this.panes.get(paneName);
+        if (pane == null || DEFAULT_PANE.equals(paneName)) return;
+        ContentPage currentPage = this.getSelectedPage(pane);
+        if (currentPage.isActive()) {
+            currentPage.dispatchOnBeforeHide(true);
+            currentPage.dispatchRecycleSharedViews();
+            LinearLayout contentWrapper = pane.getContentWrapper();
+            if (contentWrapper != null) {
+                contentWrapper.removeAllViews();
+            }
+            currentPage.dispatchOnAfterHide();
+        }
+        pane.clear();
+        this.panes.remove(paneName);
+        this.refreshBroadcastReceiverFilter();
+    }
+
+    /**
+     * Resolves a menu item's id to its content page, as shown in the given pane.
+     * @return The content page, or null if there is no content page associated with the menu item
+     */
+    private ContentPage getPage(ContentPagePane pane, int menuItemResourceId) {
+        return menuItemResourceId == 0 ? pane.getEmptyPage() : this.contentPages.get(menuItemResourceId);
+    }
+
+    /**
+     * Gets the content page currently selected in the given pane.
+     */
+    private ContentPage getSelectedPage(ContentPagePane pane) {
+        return this.getPage(pane, pane.getSelectedContent());
+    }
+
+    /**
+     * Checks whether a content page is selected in another pane than the given one, as it can only be shown in one pane at a time.
+     */
+    private boolean isSelectedInOtherPane(ContentPage page, ContentPagePane pane) {
+        for (ContentPagePane otherPane : this.panes.values()) {
+            if (otherPane != pane && this.getSelectedPage(otherPane) == page) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the error page is attached to the content wrapper of a pane, instead of the selected content page's layout.
+     */
+    private boolean isErrorPageShown(ContentPagePane pane) {
+        LinearLayout contentWrapper = pane.getContentWrapper();
+        return contentWrapper != null && pane.getErrorView() != null && pane.getErrorView().getView().getParent() == contentWrapper;
+    }
+
+    /**
+     * Finds the pane containing a view, by walking up its parents to a tagged content wrapper.
+     * @return The pane containing the view, or the {@link #DEFAULT_PANE} if the view is not contained in any pane
+     */
+    private ContentPagePane findPane(View view) {
+        View current = view;
+        while (current != null) {
+            Object tag = current.getTag(R.id.content_page_pane);
+            if (tag instanceof ContentPagePane && this.panes.get(((ContentPagePane) tag).getName()) == tag) {
+                return (ContentPagePane) tag;
+            }
+            ViewParent parent = current.getParent();
+            current = parent instanceof View ? (View) parent : null;
+        }
+        return this.panes.get(DEFAULT_PANE);
+    }
+
+    /**
+     * Rebuilds the index of panes by intent action and informs the callback handler about the union of all intent actions
+     * of the shown content pages.
+     */
+    private void refreshBroadcastReceiverFilter() {
+        this.panesByAction.clear();
+        for (ContentPagePane pane : this.panes.values()) {
+            for (String action : this.getSelectedPage(pane).dispatchGetIntentFilterActions()) {
+                ArrayList<ContentPagePane> actionPanes = this.panesByAction.get(action);
+                if (actionPanes == null) {
+                    actionPanes = new ArrayList<>();
+                    this.panesByAction.put(action, actionPanes);
+                }
+                actionPanes.add(pane);
+            }
+        }
+        this.callbackHandler.refreshBroadcastReceiverFilter(this.panesByAction.keySet().toArray(new String[this.panesByAction.size()]));
+    }
+
+    /**
+     * Gets the view pool shared by all content pages, which opt into it via {@link ContentPage#useSharedViewPool(RecyclerView)}.
+     */
+    public RecyclerView.RecycledViewPool getSharedViewPool() {
+        return this.sharedViewPool;
+    }
+
+    /**
+     * Sets the maximum number of view holders of a view type kept in the shared view pool.
+     * Only view types with a set size are pre-created by {@link ContentPageLibrary#prewarmViewHolders(int)}.
+     * @param viewType The view type, as returned by the adapters of the content pages
+     * @param maxViews The maximum number of view holders of this type to keep
+     */
+    public void setSharedViewPoolSize(int viewType, int maxViews) {
+        this.sharedViewPool.setMaxRecycledViews(viewType, maxViews);
+        this.sharedViewPoolSizes.put(viewType, maxViews);
+    }
+
+    /**
+     * Pre-creates view holders for the shared view pool at idle time, for a content page that is expected to be shown next.
+     * Replaces any content page previously scheduled for prewarming.
+     * @param menuItemResourceId The id of the menu item, the upcoming content page is linked to
+     */
+    public void prewarmViewHolders(int menuItemResourceId) {
+        ContentPage page = this.contentPages.get(menuItemResourceId);
+        if (page == null || page.dispatchGetPrewarmAdapter() == null || this.panes.get(DEFAULT_PANE).getContentWrapper() == null) return;
+        boolean scheduled = this.prewarmPage != null;
+        this.prewarmPage = page;
+        if (!scheduled) {
+            Looper.myQueue().addIdleHandler(this.prewarmIdleHandler);
+        }
+    }
+
+    /**
+     * Creates a single view holder of the first view type of the given content page, which is not yet filled up in the shared view pool.
+     * @param page The content page to create a view holder for
+     * @return True if a view holder was created, False if the shared view pool is filled up for this content page
+     */
+    private boolean prewarmViewHolder(ContentPage page) {
+        RecyclerView.Adapter adapter = page.dispatchGetPrewarmAdapter();
+        LinearLayout contentWrapper = this.panes.get(DEFAULT_PANE).getContentWrapper();
+        if (adapter == null || contentWrapper == null) return false;
+        for (int viewType : page.dispatchGetPrewarmViewTypes()) {
+            if (this.sharedViewPool.getRecycledViewCount(viewType) < this.sharedViewPoolSizes.get(viewType)) {
+                if (this.prewarmParent == null) {
+                    this.prewarmParent = new RecyclerView(contentWrapper.getContext());
+                    this.prewarmParent.setLayoutManager(new LinearLayoutManager(contentWrapper.getContext()));
+                }
+                this.sharedViewPool.putRecycledView(adapter.createViewHolder(this.prewarmParent, viewType));
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -68,6 +397,7 @@ public class ContentPageLibrary {
         if (menuItemResourceId > 0) {
             removeContentPage(menuItemResourceId);
             this.contentPages.put(menuItemResourceId, newPage);
+            newPage.dispatchOnAttach(this);
             newPage.dispatchOnCreate(this.contentPageSharedData, activity);
         }
     }
@@ -75,43 +405,104 @@ public class ContentPageLibrary {
     /**
      * Removes the page associated with a menu item. To replace a menu item with a different content page,
      * you can simply re-add a different content page with the same menu item id!
+     * Panes in which the content page is selected are reset to their empty page.
      * Fails silently (if there was no existing association before)
      * @param menuItemResourceId The id of the menu item, of which to remove the association
      */
     public void removeContentPage(int menuItemResourceId) {
         if (this.contentPages.containsKey(menuItemResourceId) && menuItemResourceId > 0) {
-            this.contentPages.get(menuItemResourceId).dispatchOnDestroy();
+            ContentPage page = this.contentPages.get(menuItemResourceId);
+            for (ContentPagePane pane : this.panes.values()) {
+                if (pane.getSelectedContent() == menuItemResourceId) {
+                    this.resetPane(pane);
+                }
+            }
             this.contentPages.remove(menuItemResourceId);
+            if (page == this.prewarmPage) {
+                Looper.myQueue().removeIdleHandler(this.prewarmIdleHandler);
+                this.prewarmPage = null;
+            }
+            this.dirtyPages.remove(page);
+            page.dispatchOnDestroy();
+            this.refreshBroadcastReceiverFilter();
+        }
+    }
+
+    /**
+     * Hides the content page selected in a pane and selects the pane's empty page instead.
+     * The empty page is only shown if the selected content page was shown.
+     * @param pane The pane to reset
+     */
+    private void resetPane(ContentPagePane pane) {
+        ContentPage currentPage = this.getSelectedPage(pane);
+        LinearLayout contentWrapper = pane.getContentWrapper();
+        boolean shown = currentPage.isActive();
+        if (shown) {
+            currentPage.dispatchOnBeforeHide(true);
+            currentPage.dispatchRecycleSharedViews();
+            if (contentWrapper != null) {
+                contentWrapper.removeAllViews();
+            }
+            currentPage.dispatchOnAfterHide();
+        }
+        pane.setSelectedContent(0);
+        if (shown) {
+            ContentPage emptyPage = pane.getEmptyPage();
+            emptyPage.dispatchOnBeforeShow(true);
+            if (contentWrapper != null && this.layoutInflater != null) {
+                this.inflatePage(emptyPage, pane, contentWrapper, this.layoutInflater);
+            }
+            emptyPage.dispatchOnAfterShow(contentWrapper);
         }
     }
 
     /**
-     * Shows a content page based on the given menu item.
+     * Shows a content page based on the given menu item in the {@link #DEFAULT_PANE}.
      *
      * @param menuItemResourceId The registered resource id of a menu item with which a content page is associated
      * @param activity The activity containing the wrapper layout in which to inflate the new content
      * @return Whether the content page could be shown or not (If the content page is not shown, this can have multiple reasons)
      */
     public boolean show(int menuItemResourceId, Activity activity) {
-        if (!this.contentPages.containsKey(menuItemResourceId)) return false;
-        ContentPage currentPage = this.contentPages.get(this.selectedContent);
-        ContentPage nextPage = this.contentPages.get(menuItemResourceId);
-        //LinearLayout contentWrapper = (LinearLayout) activity.findViewById(R.id.content_wrapper);
+        return this.show(DEFAULT_PANE, menuItemResourceId, activity);
+    }
+
+    /**
+     * Shows a content page based on the given menu item in the given pane.
+     * A content page can only be shown in one pane at a time.
+     *
+     * @param paneName The name of the pane in which to show the content page
+     * @param menuItemResourceId The registered resource id of a menu item with which a content page is associated
+     * @param activity The activity containing the wrapper layout in which to inflate the new content
+     * @return Whether the content page could be shown or not (If the content page is not shown, this can have multiple reasons)
+     */
+    public boolean show(String paneName, int menuItemResourceId, Activity activity) {
+        ContentPagePane pane = this.panes.get(paneName);
+        if (pane == null) return false;
+        ContentPage currentPage = this.getSelectedPage(pane);
+        ContentPage nextPage = this.getPage(pane, menuItemResourceId);
+        if (nextPage == null || this.isSelectedInOtherPane(nextPage, pane)) return false;
+        //Re-showing the shown content page is a no-op, it can refresh itself via ContentPage#markViewDirty(int).
+        //Unless the error page is shown, which is then replaced by a freshly inflated layout
+        if (nextPage == currentPage && currentPage.isActive() && !this.isErrorPageShown(pane)) return true;
+        LinearLayout contentWrapper = pane.getContentWrapper();
+        LayoutInflater layoutInflater = this.layoutInflater;
         if (contentWrapper != null && layoutInflater != null) {
             if (currentPage.dispatchOnBeforeHide(false)) {
+                currentPage.dispatchRecycleSharedViews();
                 contentWrapper.removeAllViews();
                 currentPage.dispatchOnAfterHide();
                 if (nextPage.dispatchOnBeforeShow(false)) {
-                    layoutInflater.inflate(nextPage.dispatchGetLayoutResourceId(), contentWrapper);
-                    selectedContent = menuItemResourceId;
-                    nextPage.dispatchOnAfterShow();
-                    this.callbackHandler.refreshBroadcastReceiverFilter(nextPage.dispatchGetIntentFilterActions());
+                    this.inflatePage(nextPage, pane, contentWrapper, layoutInflater);
+                    pane.setSelectedContent(menuItemResourceId);
+                    nextPage.dispatchOnAfterShow(contentWrapper);
+                    this.refreshBroadcastReceiverFilter();
                     return true;
                 } else {
                     currentPage.dispatchOnBeforeShow(true);
-                    layoutInflater.inflate(currentPage.dispatchGetLayoutResourceId(), contentWrapper);
-                    currentPage.dispatchOnAfterShow();
-                    this.callbackHandler.refreshBroadcastReceiverFilter(currentPage.dispatchGetIntentFilterActions());
+                    this.inflatePage(currentPage, pane, contentWrapper, layoutInflater);
+                    currentPage.dispatchOnAfterShow(contentWrapper);
+                    this.refreshBroadcastReceiverFilter();
                     return false;
                 }
             }
@@ -120,54 +511,465 @@ public class ContentPageLibrary {
     }
 
     /**
-     * Dispatches the onAfterShow event to the currently selected content
+     * Shows content pages in multiple panes at once, e.g. when opening a multi-pane layout.
+     * The currently shown content pages are hidden first, in the same order of callbacks as {@link #show(String, int, Activity)}.
+     * The next content pages are then prepared concurrently: Their {@link ContentPage#onBeforeShow(boolean)} is called on worker threads,
+     * while their layouts are inflated one after another on a single background thread, as layout inflation is not thread-safe.
+     * Layouts which can not be inflated off the main thread are inflated on the main thread afterwards.
+     * A content page may move from a pane to another pane, which shows a different content page afterwards.
+     * Panes which keep their content page, e.g. as it refused to be hidden, let the requests showing it in another pane fail.
+     * Panes whose next content page could not be prepared re-show their current content page, or their empty page if it moved to another pane.
+     *
+     * @param menuItemResourceIdsByPane The registered resource ids of the menu items to show, by the names of the panes to show them in
+     * @param activity The activity containing the wrapper layouts in which to inflate the new contents
+     * @return Whether all content pages could be shown or not
+     */
+    public boolean showPanes(Map<String, Integer> menuItemResourceIdsByPane, Activity activity) {
+        LayoutInflater layoutInflater = this.layoutInflater;
+        if (layoutInflater == null) return false;
+        boolean allShown = true;
+        ArrayList<PanePreparation> preparations = new ArrayList<>();
+        ArrayList<ContentPage> nextPages = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : menuItemResourceIdsByPane.entrySet()) {
+            ContentPagePane pane = this.panes.get(entry.getKey());
+            ContentPage nextPage = pane == null ? null : this.getPage(pane, entry.getValue());
+            LinearLayout contentWrapper = pane == null ? null : pane.getContentWrapper();
+            if (nextPage == null || contentWrapper == null || nextPages.contains(nextPage)) {
+                allShown = false;
+                continue;
+            }
+            nextPages.add(nextPage);
+            preparations.add(new PanePreparation(pane, contentWrapper, entry.getValue(), this.getSelectedPage(pane), nextPage));
+        }
+        this.rejectConflictingPreparations(preparations);
+        ArrayList<PanePreparation> hiddenPreparations = new ArrayList<>();
+        for (PanePreparation preparation : preparations) {
+            if (!preparation.accepted) continue;
+            if (preparation.nextPage == preparation.currentPage && preparation.currentPage.isActive() && !this.isErrorPageShown(preparation.pane)) continue;
+            if (preparation.currentPage.dispatchOnBeforeHide(false)) {
+                hiddenPreparations.add(preparation);
+            } else {
+                preparation.accepted = false;
+            }
+        }
+        //Panes keeping their content page may conflict with further panes, these re-show their current content page
+        this.rejectConflictingPreparations(preparations);
+        for (PanePreparation preparation : hiddenPreparations) {
+            preparation.currentPage.dispatchRecycleSharedViews();
+            preparation.contentWrapper.removeAllViews();
+            preparation.currentPage.dispatchOnAfterHide();
+        }
+        this.preparePanes(hiddenPreparations, layoutInflater);
+        ArrayList<ContentPage> shownPages = new ArrayList<>();
+        for (PanePreparation preparation : preparations) {
+            if (!preparation.accepted) {
+                allShown = false;
+            } else if (preparation.prepared) {
+                shownPages.add(preparation.nextPage);
+            }
+        }
+        for (PanePreparation preparation : hiddenPreparations) {
+            if (preparation.accepted && preparation.prepared) {
+                if (preparation.preinflatedView != null) {
+                    preparation.contentWrapper.addView(preparation.preinflatedView);
+                } else {
+                    this.inflatePage(preparation.nextPage, preparation.pane, preparation.contentWrapper, layoutInflater);
+                }
+                preparation.pane.setSelectedContent(preparation.menuItemResourceId);
+                preparation.nextPage.dispatchOnAfterShow(preparation.contentWrapper);
+            } else {
+                allShown = false;
+                ContentPage fallbackPage = preparation.currentPage;
+                if (shownPages.contains(fallbackPage)) {
+                    //The current content page moved to another pane, whereas the next content page could not be prepared
+                    fallbackPage = preparation.pane.getEmptyPage();
+                    preparation.pane.setSelectedContent(0);
+                }
+                fallbackPage.dispatchOnBeforeShow(true);
+                this.inflatePage(fallbackPage, preparation.pane, preparation.contentWrapper, layoutInflater);
+                fallbackPage.dispatchOnAfterShow(preparation.contentWrapper);
+            }
+        }
+        this.refreshBroadcastReceiverFilter();
+        return allShown;
+    }
+
+    /**
+     * Rejects the preparations of panes, whose next content page stays selected in another pane, until there are no conflicts left.
+     * Panes with a rejected preparation keep their current content page, which may in turn conflict with further preparations.
+     * @param preparations The preparations of the panes, in order of request
+     */
+    private void rejectConflictingPreparations(ArrayList<PanePreparation> preparations) {
+        HashMap<ContentPagePane, ContentPage> targetPages = new HashMap<>();
+        for (ContentPagePane pane : this.panes.values()) {
+            targetPages.put(pane, this.getSelectedPage(pane));
+        }
+        for (PanePreparation preparation : preparations) {
+            if (preparation.accepted) {
+                targetPages.put(preparation.pane, preparation.nextPage);
+            }
+        }
+        boolean rejected = true;
+        while (rejected) {
+            rejected = false;
+            for (PanePreparation preparation : preparations) {
+                if (!preparation.accepted) continue;
+                for (Map.Entry<ContentPagePane, ContentPage> targetPage : targetPages.entrySet()) {
+                    if (targetPage.getKey() != preparation.pane && targetPage.getValue() == preparation.nextPage) {
+                        preparation.accepted = false;
+                        targetPages.put(preparation.pane, preparation.currentPage);
+                        rejected = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepares the next content pages of the given panes, concurrently if there is more than one.
+     * A preparation failing with an exception is treated like a refused {@link ContentPage#onBeforeShow(boolean)},
+     * so its pane re-shows its current content page. Waits for all preparations to finish, even when interrupted,
+     * as the callbacks of the content pages can not be cancelled.
+     * @param preparations The preparations of the panes, whose current content pages are hidden
+     * @param layoutInflater The layout inflater, of which the inflation thread uses a clone
+     */
+    private void preparePanes(ArrayList<PanePreparation> preparations, LayoutInflater layoutInflater) {
+        if (preparations.isEmpty()) return;
+        ArrayList<PanePreparation> submittedPreparations = new ArrayList<>();
+        ArrayList<Future<Void>> futures = new ArrayList<>();
+        if (this.preparationExecutor == null) {
+            this.preparationExecutor = Executors.newCachedThreadPool();
+            this.inflationExecutor = Executors.newSingleThreadExecutor();
+        }
+        final LayoutInflater inflationLayoutInflater = layoutInflater.cloneInContext(layoutInflater.getContext());
+        final ExecutorService inflationExecutor = this.inflationExecutor;
+        for (final PanePreparation preparation : preparations) {
+            if (!preparation.accepted) continue;
+            submittedPreparations.add(preparation);
+            futures.add(this.preparationExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    preparation.prepare(inflationLayoutInflater, inflationExecutor);
+                    return null;
+                }
+            }));
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            while (true) {
+                try {
+                    futures.get(i).get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    submittedPreparations.get(i).prepared = false;
+                    submittedPreparations.get(i).preinflatedView = null;
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Inflates the layout of a content page into the content wrapper of a pane.
+     * If the content page reported an error, the pane's error page is attached and bound to the error instead.
+     * @param page The content page to inflate
+     * @param pane The pane in which the content page is shown
+     * @param contentWrapper The linear layout in which to inflate the content page
+     * @param layoutInflater The layout inflater to use for inflating the content page
+     */
+    private void inflatePage(ContentPage page, ContentPagePane pane, LinearLayout contentWrapper, LayoutInflater layoutInflater) {
+        ContentPageError error = page.dispatchGetError();
+        if (error == null) {
+            layoutInflater.inflate(page.dispatchGetLayoutResourceId(), contentWrapper);
+        } else {
+            if (pane.getErrorView() == null) {
+                pane.setErrorView(new ContentPageErrorView(layoutInflater, contentWrapper));
+            }
+            pane.getErrorView().bind(error);
+            contentWrapper.addView(pane.getErrorView().getView());
+        }
+    }
+
+    /**
+     * Swaps a selected content page between its layout and the error page in place, after it set or cleared its error.
+     * The swap is deferred to the next pass of the main thread, as the content page may report errors from within its callbacks.
+     * It is posted to the main thread's handler, as posting through a content wrapper, which is not attached, defers it until attachment.
+     * @param page The content page, whose error changed
+     */
+    void dispatchOnErrorChanged(ContentPage page) {
+        for (final ContentPagePane pane : this.panes.values()) {
+            if (this.getSelectedPage(pane) != page) continue;
+            if (pane.isErrorSwapPending() || pane.getContentWrapper() == null) return;
+            pane.setErrorSwapPending(true);
+            this.mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    pane.setErrorSwapPending(false);
+                    ContentPageLibrary.this.swapSelectedPage(pane);
+                }
+            });
+            return;
+        }
+    }
+
+    /**
+     * Swaps the content page selected in a pane between its layout and its error page in place,
+     * without re-inflating the layout or re-registering the broadcast receiver filter.
+     * While the error page is shown, the layout stays attached but gone, so it can be restored once the error is cleared.
+     * This also applies to one-shot errors, which are cleared as soon as the error page is shown.
+     */
+    private void swapSelectedPage(ContentPagePane pane) {
+        ContentPage currentPage = this.getSelectedPage(pane);
+        LinearLayout contentWrapper = pane.getContentWrapper();
+        LayoutInflater layoutInflater = this.layoutInflater;
+        if (currentPage == null || !currentPage.isActive() || contentWrapper == null || layoutInflater == null) return;
+        ContentPageError error = currentPage.dispatchGetError();
+        View errorView = pane.getErrorView() != null ? pane.getErrorView().getView() : null;
+        if (error != null) {
+            for (int i = 0; i < contentWrapper.getChildCount(); i++) {
+                View child = contentWrapper.getChildAt(i);
+                if (child != errorView && child.getVisibility() != View.GONE) {
+                    child.setTag(R.id.content_page_error_hidden, Boolean.TRUE);
+                    child.setVisibility(View.GONE);
+                }
+            }
+            if (pane.getErrorView() == null) {
+                pane.setErrorView(new ContentPageErrorView(layoutInflater, contentWrapper));
+            }
+            pane.getErrorView().bind(error);
+            if (pane.getErrorView().getView().getParent() != contentWrapper) {
+                contentWrapper.addView(pane.getErrorView().getView());
+            }
+            currentPage.dispatchOnErrorShown();
+        } else {
+            //The error may have been cleared before it was swapped in, the layout is still shown then
+            if (!this.isErrorPageShown(pane)) return;
+            contentWrapper.removeView(errorView);
+            boolean restored = false;
+            for (int i = 0; i < contentWrapper.getChildCount(); i++) {
+                View child = contentWrapper.getChildAt(i);
+                if (child.getTag(R.id.content_page_error_hidden) != null) {
+                    child.setTag(R.id.content_page_error_hidden, null);
+                    child.setVisibility(View.VISIBLE);
+                    restored = true;
+                }
+            }
+            if (restored) {
+                currentPage.dispatchOnErrorHidden();
+            } else {
+                //The error was shown from the start, so the layout was never inflated
+                layoutInflater.inflate(currentPage.dispatchGetLayoutResourceId(), contentWrapper);
+                currentPage.dispatchOnAfterShow(contentWrapper);
+            }
+        }
+    }
+
+    /**
+     * Schedules a refresh pass for the next frame, in which all content pages that requested a refresh since are refreshed together.
+     * The pass is posted through the content wrapper of the pane showing the content page, or through the main thread's
+     * message queue if that content wrapper is not attached.
+     * @param page The content page, which marked parts of its layout dirty
+     */
+    void dispatchOnRefreshRequested(ContentPage page) {
+        this.dirtyPages.add(page);
+        if (this.refreshScheduled) return;
+        LinearLayout contentWrapper = null;
+        for (ContentPagePane pane : this.panes.values()) {
+            if (this.getSelectedPage(pane) == page) {
+                contentWrapper = pane.getContentWrapper();
+                break;
+            }
+        }
+        this.refreshScheduled = true;
+        if (contentWrapper != null && ViewCompat.isAttachedToWindow(contentWrapper)) {
+            ViewCompat.postOnAnimation(contentWrapper, this.refreshRunnable);
+        } else {
+            this.mainHandler.post(this.refreshRunnable);
+        }
+    }
+
+    /**
+     * Dispatches the onAfterShow event to the currently selected content of each pane
      */
     public void dispatchOnResume() {
-        ContentPage currentPage = this.contentPages.get(this.selectedContent);
-        currentPage.dispatchOnBeforeShow(true);
-        if (this.contentWrapper != null) {
-            this.layoutInflater.inflate(currentPage.dispatchGetLayoutResourceId(), contentWrapper);
+        LayoutInflater layoutInflater = this.layoutInflater;
+        for (ContentPagePane pane : this.panes.values()) {
+            ContentPage currentPage = this.getSelectedPage(pane);
+            LinearLayout contentWrapper = pane.getContentWrapper();
+            currentPage.dispatchOnBeforeShow(true);
+            if (contentWrapper != null && layoutInflater != null) {
+                this.inflatePage(currentPage, pane, contentWrapper, layoutInflater);
+            }
+            //Resume even if there was an error in refreshing the UI (failsafe, will trigger only a visual bug)
+            currentPage.dispatchOnAfterShow(contentWrapper);
         }
-        //Resume even if there was an error in refreshing the UI (failsafe, will trigger only a visual bug)
-        currentPage.dispatchOnAfterShow();
     }
 
     /**
-     * Dispatches the onBeforeHide event to the currently selected content
+     * Dispatches the onBeforeHide event to the currently selected content of each pane
      */
     public void dispatchOnPause() {
-        ContentPage currentPage = this.contentPages.get(this.selectedContent);
-        currentPage.dispatchOnBeforeHide(true);
-        if (this.contentWrapper != null) {
-            this.contentWrapper.removeAllViews();
+        for (ContentPagePane pane : this.panes.values()) {
+            ContentPage currentPage = this.getSelectedPage(pane);
+            currentPage.dispatchOnBeforeHide(true);
+            currentPage.dispatchRecycleSharedViews();
+            LinearLayout contentWrapper = pane.getContentWrapper();
+            if (contentWrapper != null) {
+                contentWrapper.removeAllViews();
+            }
+            currentPage.dispatchOnAfterHide();
         }
-        currentPage.dispatchOnAfterHide();
     }
 
     /**
-     * Dispatches clicks to the currently shown content
+     * Sets the guard, which is informed about all content pages and layouts when the activity is destroyed
+     * and reports them if they are still reachable a few seconds later.
+     * The check and thus the guard's listener run on a background thread, as checking forces a garbage collection.
+     * @param leakGuard The leak guard, which should outlive the activity. Null to disable leak detection
+     */
+    public void setLeakGuard(ContentPageLeakGuard leakGuard) {
+        this.leakGuard = leakGuard;
+    }
+
+    /**
+     * Dispatches the onDestroy event to all content pages and releases all references to the activity and its views.
+     * Must be called during the activity's lifecycle's onDestroy. The library can not be used afterwards.
+     * @param activity The activity being destroyed
+     */
+    public void dispatchOnDestroy(Activity activity) {
+        if (this.preparationExecutor != null) {
+            this.preparationExecutor.shutdown();
+            this.preparationExecutor = null;
+            this.inflationExecutor.shutdown();
+            this.inflationExecutor = null;
+        }
+        if (this.prewarmPage != null) {
+            Looper.myQueue().removeIdleHandler(this.prewarmIdleHandler);
+            this.prewarmPage = null;
+        }
+        this.prewarmParent = null;
+        this.sharedViewPool.clear();
+        this.dirtyPages.clear();
+        for (Integer menuItemResourceId : this.contentPages.keySet()) {
+            ContentPage page = this.contentPages.get(menuItemResourceId);
+            page.dispatchOnDestroy();
+            if (this.leakGuard != null) {
+                //Content pages only hold the activity weakly, so a leaked content page only retains itself
+                this.leakGuard.watch(page, menuItemResourceId, page.getClass().getName(), estimateShallowSize(page));
+            }
+        }
+        this.contentPages.clear();
+        ContentPagePane defaultPane = this.panes.get(DEFAULT_PANE);
+        for (ContentPagePane pane : this.panes.values()) {
+            LinearLayout contentWrapper = pane.getContentWrapper();
+            if (this.leakGuard != null && contentWrapper != null) {
+                this.leakGuard.watch(contentWrapper, pane.getSelectedContent(), "contentWrapper:" + pane.getName(),
+                        countViews(contentWrapper) * ESTIMATED_BYTES_PER_VIEW);
+            }
+            pane.clear();
+        }
+        this.panesByAction.clear();
+        if (this.leakGuard != null) {
+            View decorView = activity.getWindow() != null ? activity.getWindow().peekDecorView() : null;
+            this.leakGuard.watch(activity, defaultPane.getSelectedContent(), activity.getClass().getName(),
+                    decorView != null ? countViews(decorView) * ESTIMATED_BYTES_PER_VIEW : estimateShallowSize(activity));
+            final ContentPageLeakGuard leakGuard = this.leakGuard;
+            getLeakCheckHandler().postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    leakGuard.check();
+                }
+            }, LEAK_CHECK_DELAY_MS);
+        }
+        this.layoutInflater = null;
+        this.contentPageSharedData = null;
+        //The callback handler usually is the activity itself
+        this.callbackHandler = new LazyUiNoCallbacks();
+    }
+
+    /**
+     * Gets a handler of the background thread, on which the leak guards check for leaks.
+     */
+    private static synchronized Handler getLeakCheckHandler() {
+        if (leakCheckThread == null) {
+            leakCheckThread = new HandlerThread("LazyUiLeakCheck");
+            leakCheckThread.start();
+        }
+        return new Handler(leakCheckThread.getLooper());
+    }
+
+    /**
+     * Estimates the number of bytes of an object itself, without the objects it references.
+     * @param object The object to estimate
+     * @return The estimated number of bytes of the object's header and fields
+     */
+    static long estimateShallowSize(Object object) {
+        long size = ESTIMATED_BYTES_PER_OBJECT_HEADER;
+        for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += ESTIMATED_BYTES_PER_FIELD;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Counts the views of a view tree.
+     * @param view The root of the view tree
+     * @return The number of views in the tree, including the root
+     */
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup viewGroup = (ViewGroup) view;
+            for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                count += countViews(viewGroup.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Dispatches clicks to the currently shown content of the pane containing the clicked view
      * @param view The clicked view
      */
     public void dispatchOnClick(View view) {
-        this.contentPages.get(this.selectedContent).onClick(view);
+        this.getSelectedPage(this.findPane(view)).onClick(view);
     }
 
     /**
-     * Dispatches request results of permissions to the currently shown content
+     * Dispatches request results of permissions to the currently shown content of the {@link #DEFAULT_PANE}.
+     * Content pages of other panes would receive results of requests they never made, whose request codes may collide with their own.
      * @param requestCode The request code supplied at the request of the permissions.
      * @param permissions The permissions requested.
      * @param grantResults The results of the request per permission.
      */
     public void dispatchOnRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
-        this.contentPages.get(this.selectedContent).onRequestPermissionsResult(requestCode, permissions, grantResults);
+        this.getSelectedPage(this.panes.get(DEFAULT_PANE)).onRequestPermissionsResult(requestCode, permissions, grantResults);
     }
 
     /**
-     * Dispatches received intents to the currently shown content
+     * Dispatches received intents to the currently shown contents of the panes, which filter the intent's action.
+     * Intents with actions no shown content filters are dispatched to the {@link #DEFAULT_PANE}.
      * @param context The context
      * @param intent The received intent
      */
     public void dispatchOnReceive(Context context, Intent intent) {
-        this.contentPages.get(this.selectedContent).onReceive(context, intent);
+        ArrayList<ContentPagePane> actionPanes = intent.getAction() == null ? null : this.panesByAction.get(intent.getAction());
+        if (actionPanes == null) {
+            this.getSelectedPage(this.panes.get(DEFAULT_PANE)).onReceive(context, intent);
+            return;
+        }
+        for (ContentPagePane pane : actionPanes) {
+            this.getSelectedPage(pane).onReceive(context, intent);
+        }
     }
 }
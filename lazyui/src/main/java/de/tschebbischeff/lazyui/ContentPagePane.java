@@ -0,0 +1,109 @@
+package de.tschebbischeff.lazyui;
+
+import android.widget.LinearLayout;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A named container of the {@link ContentPageLibrary}, in which one content page at a time is shown.
+ */
+class ContentPagePane {
+
+    /**
+     * The name of this pane
+     */
+    private final String name;
+
+    /**
+     * The linear layout in which the content pages of this pane are inflated.
+     * Only weakly referenced and cleared when the activity is destroyed, to not retain the activity's view tree.
+     */
+    private final WeakReference<LinearLayout> contentWrapper;
+
+    /**
+     * The empty content page shown in this pane until another content page is selected
+     */
+    private final ContentPage emptyPage;
+
+    /**
+     * The id of the currently shown content, to manage callbacks.
+     */
+    private int selectedContent = 0;
+
+    /**
+     * The error page shared by all content pages shown in this pane, inflated on first use and rebound to each displayed error
+     */
+    private ContentPageErrorView errorView = null;
+
+    /**
+     * Whether swapping the selected content page between its layout and the error page is already scheduled
+     */
+    private boolean errorSwapPending = false;
+
+    /**
+     * Create a new pane. The content wrapper is tagged with the pane, so views can be mapped to their pane.
+     *
+     * @param name           The name of the pane
+     * @param contentWrapper The linear layout in which the content pages of this pane are inflated
+     * @param emptyPage      The empty content page shown in this pane until another content page is selected
+     */
+    ContentPagePane(String name, LinearLayout contentWrapper, ContentPage emptyPage) {
+        this.name = name;
+        this.contentWrapper = new WeakReference<>(contentWrapper);
+        this.emptyPage = emptyPage;
+        if (contentWrapper != null) {
+            contentWrapper.setTag(R.id.content_page_pane, this);
+        }
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * The linear layout in which the content pages of this pane are inflated. May be null if the activity was destroyed.
+     */
+    LinearLayout getContentWrapper() {
+        return this.contentWrapper.get();
+    }
+
+    ContentPage getEmptyPage() {
+        return this.emptyPage;
+    }
+
+    int getSelectedContent() {
+        return this.selectedContent;
+    }
+
+    void setSelectedContent(int selectedContent) {
+        this.selectedContent = selectedContent;
+    }
+
+    ContentPageErrorView getErrorView() {
+        return this.errorView;
+    }
+
+    void setErrorView(ContentPageErrorView errorView) {
+        this.errorView = errorView;
+    }
+
+    boolean isErrorSwapPending() {
+        return this.errorSwapPending;
+    }
+
+    void setErrorSwapPending(boolean errorSwapPending) {
+        this.errorSwapPending = errorSwapPending;
+    }
+
+    /**
+     * Releases the content wrapper and the error page of this pane.
+     */
+    void clear() {
+        LinearLayout contentWrapper = this.contentWrapper.get();
+        if (contentWrapper != null && contentWrapper.getTag(R.id.content_page_pane) == this) {
+            contentWrapper.setTag(R.id.content_page_pane, null);
+        }
+        this.contentWrapper.clear();
+        this.errorView = null;
+    }
+}
@@ -0,0 +1,186 @@
+package de.tschebbischeff.lazyui;
+
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewStub;
+
+/**
+ * Superclass containing callbacks for a named part of a {@link ContentPage}'s layout, which is declared as a {@link ViewStub}
+ * and only inflated on demand.
+ */
+public abstract class ContentPageRegion {
+
+    /**
+     * The region is only inflated when explicitly expanded by the owning content page.
+     */
+    public static final int INFLATE_ON_EXPAND = 0;
+
+    /**
+     * The region is additionally inflated as soon as its stub is scrolled into view.
+     */
+    public static final int INFLATE_WHEN_VISIBLE = 1;
+
+    /**
+     * The region is additionally inflated when the main thread is idle after the owning content page has been shown.
+     */
+    public static final int INFLATE_WHEN_IDLE = 2;
+
+    /**
+     * The id of the view stub declaring this region in the content page's layout
+     */
+    private final int viewStubId;
+
+    /**
+     * The triggers, besides explicit expansion, on which this region is inflated
+     */
+    private final int inflateTriggers;
+
+    /**
+     * The view stub of this region, as long as it is not yet inflated
+     */
+    private ViewStub viewStub = null;
+
+    /**
+     * The inflated view of this region, null if it is not yet inflated or the owning content page is hidden
+     */
+    private View view = null;
+
+    /**
+     * Whether the owning content page is currently shown
+     */
+    private boolean shown = false;
+
+    /**
+     * The visible part of the stub's parent, reused across the scroll events checking whether the stub is in view
+     */
+    private final Rect visibleRect = new Rect();
+
+    /**
+     * Create a new lazy region.
+     *
+     * @param viewStubId      The id of the {@link ViewStub} declaring this region in the content page's layout
+     * @param inflateTriggers A combination of {@link #INFLATE_WHEN_VISIBLE} and {@link #INFLATE_WHEN_IDLE},
+     *                        or {@link #INFLATE_ON_EXPAND} to only inflate this region explicitly
+     */
+    public ContentPageRegion(int viewStubId, int inflateTriggers) {
+        this.viewStubId = viewStubId;
+        this.inflateTriggers = inflateTriggers;
+    }
+
+    /**
+     * Whether this region is inflated on the given trigger.
+     */
+    boolean hasInflateTrigger(int trigger) {
+        return (this.inflateTriggers & trigger) != 0;
+    }
+
+    /**
+     * Whether this region is currently inflated.
+     */
+    boolean isInflated() {
+        return this.view != null;
+    }
+
+    /**
+     * Whether this region is still pending, i.e. declared in the currently shown layout but not yet inflated.
+     */
+    boolean isPending() {
+        return this.viewStub != null;
+    }
+
+    /**
+     * Child classes can get the inflated view of this region. May be null if the region is not yet inflated.
+     */
+    View getView() {
+        return this.view;
+    }
+
+    /**
+     * Checks whether the stub of this region is within the visible part of its parent.
+     * As view stubs are never laid out, their position is approximated by the bottom edge of the preceding sibling.
+     *
+     * @return True if the region is pending and scrolled into view
+     */
+    boolean isStubInView() {
+        if (this.viewStub == null) return false;
+        ViewParent parent = this.viewStub.getParent();
+        if (!(parent instanceof ViewGroup)) return false;
+        ViewGroup parentGroup = (ViewGroup) parent;
+        if (!parentGroup.getLocalVisibleRect(this.visibleRect)) return false;
+        int index = parentGroup.indexOfChild(this.viewStub);
+        int anchor = index > 0 ? parentGroup.getChildAt(index - 1).getBottom() : 0;
+        return anchor >= this.visibleRect.top && anchor <= this.visibleRect.bottom;
+    }
+
+    /**
+     * Dispatches the expand task, inflating this region if it is not yet inflated.
+     *
+     * @return True if the region is inflated after this call
+     */
+    boolean dispatchExpand() {
+        if (this.view != null) return true;
+        if (this.viewStub == null) return false;
+        this.view = this.viewStub.inflate();
+        this.viewStub = null;
+        this.onInflate(this.view);
+        if (this.shown) {
+            this.onAfterShow();
+        }
+        return true;
+    }
+
+    /**
+     * Dispatches the after show task, binding this region to the stub in the freshly inflated layout.
+     *
+     * @param contentView The view containing the owning content page's layout
+     */
+    void dispatchOnAfterShow(View contentView) {
+        View found = contentView.findViewById(this.viewStubId);
+        this.viewStub = found instanceof ViewStub ? (ViewStub) found : null;
+        this.view = null;
+        this.shown = true;
+    }
+
+    /**
+     * Dispatches the after hide task to this region, releasing the views of the hidden layout.
+     * The layout is inflated anew when the owning content page is shown again, so the region is inflated again as well.
+     */
+    void dispatchOnAfterHide() {
+        if (this.shown && this.view != null) {
+            this.onAfterHide();
+        }
+        this.viewStub = null;
+        this.view = null;
+        this.shown = false;
+    }
+
+    /**
+     * Dispatches the destroy task, releasing all views held by this region.
+     */
+    void dispatchOnDestroy() {
+        this.viewStub = null;
+        this.view = null;
+        this.shown = false;
+    }
+
+    /**
+     * Called once each time this region is inflated.
+     *
+     * @param view The inflated view of this region
+     */
+    protected abstract void onInflate(View view);
+
+    /**
+     * Called after each inflation of this region, as the region is only inflated while the owning content page is shown.
+     */
+    protected void onAfterShow() {
+    }
+
+    /**
+     * Called when the owning content page is hidden, if this region was inflated.
+     */
+    protected void onAfterHide() {
+    }
+}
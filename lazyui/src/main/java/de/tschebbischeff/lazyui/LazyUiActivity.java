@@ -93,6 +93,7 @@ public class LazyUiActivity extends AppCompatActivity implements ILazyUiCallback
     protected void onDestroy() {
         super.onDestroy();
         unregisterReceiver(broadcastReceiver);
+        this.contentPageLibrary.dispatchOnDestroy(this);
     }
 
     /**
@@ -0,0 +1,173 @@
+package de.tschebbischeff.lazyui;
+
+import android.app.Activity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for swapping a shown {@link ContentPage} between its layout and the error page, on the development machine (host).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ContentPageErrorTest {
+
+    private static final int PAGE_ID = 1;
+
+    private static final class ErrorPage extends ContentPage {
+        int afterShowCount = 0;
+        int refreshCount = 0;
+
+        @Override
+        protected int getLayoutResourceId() {
+            return R.layout.content_page_empty;
+        }
+
+        @Override
+        protected String[] getIntentFilterActions() {
+            return new String[0];
+        }
+
+        @Override
+        protected void onCreate() {
+        }
+
+        @Override
+        protected boolean onBeforeShow(boolean forced) {
+            return true;
+        }
+
+        @Override
+        protected void onAfterShow() {
+            this.afterShowCount++;
+        }
+
+        @Override
+        protected boolean onBeforeHide(boolean forced) {
+            return true;
+        }
+
+        @Override
+        protected void onAfterHide() {
+        }
+
+        @Override
+        protected void onDestroy() {
+        }
+
+        @Override
+        protected void onRefresh(Set<Integer> dirtyViewIds, Set<String> dirtyLazyRegions) {
+            this.refreshCount++;
+        }
+    }
+
+    private Activity activity;
+    private LinearLayout contentWrapper;
+    private ContentPageLibrary contentPageLibrary;
+    private ErrorPage page;
+
+    @Before
+    public void setUp() throws Exception {
+        this.activity = Robolectric.setupActivity(Activity.class);
+        this.contentWrapper = new LinearLayout(this.activity);
+        this.activity.setContentView(this.contentWrapper);
+        this.contentPageLibrary = new ContentPageLibrary(this.contentWrapper, LayoutInflater.from(this.activity), new ContentPageSharedData(), new LazyUiNoCallbacks());
+        this.page = new ErrorPage();
+        this.contentPageLibrary.addContentPage(PAGE_ID, this.page, this.activity);
+        this.contentPageLibrary.dispatchOnResume();
+    }
+
+    @Test
+    public void oneShotErrorSetWhileShown_isSwappedBackOnClear() throws Exception {
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        View layout = this.contentWrapper.getChildAt(0);
+
+        this.page.setError("Title", "Message");
+        Robolectric.flushForegroundThreadScheduler();
+        assertTrue(this.isErrorPageShown());
+        assertEquals(View.GONE, layout.getVisibility());
+
+        this.page.clearError();
+        Robolectric.flushForegroundThreadScheduler();
+        assertFalse(this.isErrorPageShown());
+        assertEquals(1, this.contentWrapper.getChildCount());
+        assertSame(layout, this.contentWrapper.getChildAt(0));
+        assertEquals(View.VISIBLE, layout.getVisibility());
+        assertEquals(1, this.page.afterShowCount);
+    }
+
+    @Test
+    public void oneShotErrorSetWhileShown_isReplacedOnReshow() throws Exception {
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        this.page.setError("Title", "Message");
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        assertFalse(this.isErrorPageShown());
+        assertEquals(1, this.contentWrapper.getChildCount());
+        assertEquals(View.VISIBLE, this.contentWrapper.getChildAt(0).getVisibility());
+        assertEquals(2, this.page.afterShowCount);
+    }
+
+    @Test
+    public void oneShotErrorShownFromStart_isSwappedBackOnClear() throws Exception {
+        this.page.setError("Title", "Message");
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        assertTrue(this.isErrorPageShown());
+        assertEquals(0, this.page.afterShowCount);
+
+        this.page.clearError();
+        Robolectric.flushForegroundThreadScheduler();
+        assertFalse(this.isErrorPageShown());
+        assertEquals(1, this.contentWrapper.getChildCount());
+        assertEquals(1, this.page.afterShowCount);
+    }
+
+    @Test
+    public void oneShotErrorShownFromStart_isReplacedOnReshow() throws Exception {
+        this.page.setError("Title", "Message");
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        assertTrue(this.isErrorPageShown());
+
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        assertFalse(this.isErrorPageShown());
+        assertEquals(1, this.contentWrapper.getChildCount());
+        assertEquals(1, this.page.afterShowCount);
+    }
+
+    @Test
+    public void stickyError_staysShownOnReshow() throws Exception {
+        this.page.setError(new ContentPageError("Title", "Message"));
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        assertTrue(this.isErrorPageShown());
+        assertEquals(0, this.page.afterShowCount);
+    }
+
+    @Test
+    public void refresh_isSkippedWhileOneShotErrorShown() throws Exception {
+        assertTrue(this.contentPageLibrary.show(PAGE_ID, this.activity));
+        this.page.setError("Title", "Message");
+        Robolectric.flushForegroundThreadScheduler();
+
+        this.page.markViewDirty(R.id.content_page_error_title);
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(0, this.page.refreshCount);
+    }
+
+    private boolean isErrorPageShown() {
+        return this.contentWrapper.findViewById(R.id.content_page_error_title) != null;
+    }
+}
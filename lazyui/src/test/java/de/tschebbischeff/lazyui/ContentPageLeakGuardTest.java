@@ -0,0 +1,175 @@
+package de.tschebbischeff.lazyui;
+
+import android.app.Activity;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for {@link ContentPageLeakGuard}, forcing garbage collections on the development machine (host).
+ * Runs with Robolectric, to check the guard together with a destroyed {@link ContentPageLibrary}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ContentPageLeakGuardTest {
+
+    private static final class Leak {
+        final int menuItemResourceId;
+        final String referenceName;
+        final long retainedSizeEstimate;
+
+        Leak(int menuItemResourceId, String referenceName, long retainedSizeEstimate) {
+            this.menuItemResourceId = menuItemResourceId;
+            this.referenceName = referenceName;
+            this.retainedSizeEstimate = retainedSizeEstimate;
+        }
+    }
+
+    private static final class RetainedPage extends ContentPage {
+
+        @Override
+        protected int getLayoutResourceId() {
+            return R.layout.content_page_empty;
+        }
+
+        @Override
+        protected String[] getIntentFilterActions() {
+            return new String[0];
+        }
+
+        @Override
+        protected void onCreate() {
+        }
+
+        @Override
+        protected boolean onBeforeShow(boolean forced) {
+            return true;
+        }
+
+        @Override
+        protected void onAfterShow() {
+        }
+
+        @Override
+        protected boolean onBeforeHide(boolean forced) {
+            return true;
+        }
+
+        @Override
+        protected void onAfterHide() {
+        }
+
+        @Override
+        protected void onDestroy() {
+        }
+    }
+
+    private ArrayList<Leak> leaks;
+    private ContentPageLeakGuard leakGuard;
+
+    /**
+     * Simulates a content page kept alive past its activity's lifetime, e.g. by a static field of the app.
+     */
+    private Object retainedPage;
+
+    @Before
+    public void setUp() throws Exception {
+        this.leaks = new ArrayList<>();
+        this.leakGuard = new ContentPageLeakGuard(new ContentPageLeakGuard.OnLeakDetectedListener() {
+            @Override
+            public void onLeakDetected(int menuItemResourceId, String referenceName, long retainedSizeEstimate) {
+                ContentPageLeakGuardTest.this.leaks.add(new Leak(menuItemResourceId, referenceName, retainedSizeEstimate));
+            }
+        });
+    }
+
+    @Test
+    public void check_reportsReachablePage() throws Exception {
+        this.retainedPage = new byte[1024];
+        this.leakGuard.watch(this.retainedPage, 42, "RetainedPage", 4096);
+        this.watchUnreachable(7, "ReleasedPage");
+
+        assertEquals(1, this.leakGuard.check());
+        assertEquals(1, this.leaks.size());
+        assertEquals(42, this.leaks.get(0).menuItemResourceId);
+        assertEquals("RetainedPage", this.leaks.get(0).referenceName);
+        assertEquals(4096, this.leaks.get(0).retainedSizeEstimate);
+        assertNotNull(this.retainedPage);
+    }
+
+    @Test
+    public void check_ignoresCollectedPages() throws Exception {
+        this.watchUnreachable(1, "ReleasedPage");
+        this.watchUnreachable(2, "ReleasedWrapper");
+
+        assertEquals(0, this.leakGuard.check());
+        assertTrue(this.leaks.isEmpty());
+        assertEquals(0, this.leakGuard.getWatchedCount());
+    }
+
+    @Test
+    public void check_reportsLeakOnlyOnce() throws Exception {
+        this.retainedPage = new byte[1024];
+        this.leakGuard.watch(this.retainedPage, 42, "RetainedPage", 4096);
+
+        assertEquals(1, this.leakGuard.check());
+        assertEquals(0, this.leakGuard.check());
+        assertEquals(1, this.leaks.size());
+    }
+
+    @Test
+    public void check_reportsPageRetainedPastDestroyedLibrary() throws Exception {
+        this.retainedPage = new RetainedPage();
+        this.showAndDestroy((ContentPage) this.retainedPage, 42);
+
+        //The activity, its views, the library and its empty page must be collectable, only the retained page is reported
+        assertEquals(1, this.leakGuard.check());
+        assertEquals(1, this.leaks.size());
+        assertEquals(42, this.leaks.get(0).menuItemResourceId);
+        assertEquals(RetainedPage.class.getName(), this.leaks.get(0).referenceName);
+        assertEquals(ContentPageLibrary.estimateShallowSize(this.retainedPage), this.leaks.get(0).retainedSizeEstimate);
+        assertEquals(0, this.leakGuard.getWatchedCount());
+    }
+
+    @Test
+    public void check_ignoresReleasedPagesOfDestroyedLibrary() throws Exception {
+        this.showAndDestroy(new RetainedPage(), 42);
+
+        assertEquals(0, this.leakGuard.check());
+        assertTrue(this.leaks.isEmpty());
+    }
+
+    /**
+     * Shows a content page in a library of a new activity and destroys the activity afterwards.
+     * Kept in a separate method, so no local variable keeps the activity, its views or the library reachable.
+     */
+    private void showAndDestroy(ContentPage page, int menuItemResourceId) {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        LinearLayout contentWrapper = new LinearLayout(activity);
+        activity.setContentView(contentWrapper);
+        ContentPageLibrary contentPageLibrary = new ContentPageLibrary(contentWrapper, LayoutInflater.from(activity), new ContentPageSharedData(), new LazyUiNoCallbacks());
+        contentPageLibrary.setLeakGuard(this.leakGuard);
+        contentPageLibrary.addContentPage(menuItemResourceId, page, activity);
+        contentPageLibrary.dispatchOnResume();
+        contentPageLibrary.show(menuItemResourceId, activity);
+        contentPageLibrary.dispatchOnPause();
+        contentPageLibrary.dispatchOnDestroy(activity);
+    }
+
+    /**
+     * Watches an object that is not referenced anywhere else. Kept in a separate method, so no local variable keeps it reachable.
+     */
+    private void watchUnreachable(int menuItemResourceId, String referenceName) {
+        this.leakGuard.watch(new byte[1024], menuItemResourceId, referenceName, 4096);
+    }
+}
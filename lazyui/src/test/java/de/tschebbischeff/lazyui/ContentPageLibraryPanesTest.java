@@ -0,0 +1,271 @@
+package de.tschebbischeff.lazyui;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for showing content pages in multiple panes of a {@link ContentPageLibrary} and routing events to them,
+ * on the development machine (host).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ContentPageLibraryPanesTest {
+
+    private static final String SIDE_PANE = "side";
+
+    private class PanePage extends ContentPage {
+        private final int id;
+        boolean refuseHide = false;
+        boolean refuseShow = false;
+        boolean failShow = false;
+        int clickCount = 0;
+        int receiveCount = 0;
+        int permissionsResultCount = 0;
+
+        PanePage(int id) {
+            this.id = id;
+        }
+
+        @Override
+        protected int getLayoutResourceId() {
+            return R.layout.content_page_empty;
+        }
+
+        @Override
+        protected String[] getIntentFilterActions() {
+            return new String[]{actionFor(this.id)};
+        }
+
+        @Override
+        protected void onCreate() {
+        }
+
+        @Override
+        protected boolean onBeforeShow(boolean forced) {
+            ContentPageLibraryPanesTest.this.events.add(this.id + ":beforeShow");
+            if (this.failShow && !forced) throw new IllegalStateException("Preparation failed");
+            return forced || !this.refuseShow;
+        }
+
+        @Override
+        protected void onAfterShow() {
+            ContentPageLibraryPanesTest.this.events.add(this.id + ":afterShow");
+        }
+
+        @Override
+        protected boolean onBeforeHide(boolean forced) {
+            ContentPageLibraryPanesTest.this.events.add(this.id + ":beforeHide");
+            return forced || !this.refuseHide;
+        }
+
+        @Override
+        protected void onAfterHide() {
+            ContentPageLibraryPanesTest.this.events.add(this.id + ":afterHide");
+        }
+
+        @Override
+        protected void onDestroy() {
+        }
+
+        @Override
+        public void onClick(View view) {
+            this.clickCount++;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            this.receiveCount++;
+        }
+
+        @Override
+        public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+            this.permissionsResultCount++;
+        }
+    }
+
+    private Activity activity;
+    private LinearLayout defaultWrapper;
+    private LinearLayout sideWrapper;
+    private ContentPageLibrary contentPageLibrary;
+    private PanePage[] pages;
+    private List<String> events;
+
+    private static String actionFor(int id) {
+        return "de.tschebbischeff.lazyui.panes.ACTION_" + id;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.activity = Robolectric.setupActivity(Activity.class);
+        LinearLayout root = new LinearLayout(this.activity);
+        this.defaultWrapper = new LinearLayout(this.activity);
+        this.sideWrapper = new LinearLayout(this.activity);
+        root.addView(this.defaultWrapper);
+        root.addView(this.sideWrapper);
+        this.activity.setContentView(root);
+        this.contentPageLibrary = new ContentPageLibrary(this.defaultWrapper, LayoutInflater.from(this.activity), new ContentPageSharedData(), new LazyUiNoCallbacks());
+        this.contentPageLibrary.addPane(SIDE_PANE, this.sideWrapper);
+        this.events = Collections.synchronizedList(new ArrayList<String>());
+        this.pages = new PanePage[4];
+        for (int id = 1; id < this.pages.length; id++) {
+            this.pages[id] = new PanePage(id);
+            this.contentPageLibrary.addContentPage(id, this.pages[id], this.activity);
+        }
+        this.contentPageLibrary.dispatchOnResume();
+        assertTrue(this.contentPageLibrary.show(1, this.activity));
+        assertTrue(this.contentPageLibrary.show(SIDE_PANE, 2, this.activity));
+        this.events.clear();
+    }
+
+    @Test
+    public void dispatchOnClick_routesToPaneContainingView() throws Exception {
+        this.contentPageLibrary.dispatchOnClick(this.sideWrapper.getChildAt(0));
+        assertEquals(0, this.pages[1].clickCount);
+        assertEquals(1, this.pages[2].clickCount);
+
+        this.contentPageLibrary.dispatchOnClick(this.defaultWrapper.getChildAt(0));
+        this.contentPageLibrary.dispatchOnClick(new View(this.activity));
+        assertEquals(2, this.pages[1].clickCount);
+        assertEquals(1, this.pages[2].clickCount);
+    }
+
+    @Test
+    public void dispatchOnReceive_routesByAction() throws Exception {
+        this.contentPageLibrary.dispatchOnReceive(this.activity, new Intent(actionFor(2)));
+        assertEquals(0, this.pages[1].receiveCount);
+        assertEquals(1, this.pages[2].receiveCount);
+
+        this.contentPageLibrary.dispatchOnReceive(this.activity, new Intent("de.tschebbischeff.lazyui.panes.UNFILTERED"));
+        assertEquals(1, this.pages[1].receiveCount);
+        assertEquals(1, this.pages[2].receiveCount);
+    }
+
+    @Test
+    public void dispatchOnRequestPermissionsResult_routesToDefaultPane() throws Exception {
+        this.contentPageLibrary.dispatchOnRequestPermissionsResult(1, new String[0], new int[0]);
+        assertEquals(1, this.pages[1].permissionsResultCount);
+        assertEquals(0, this.pages[2].permissionsResultCount);
+    }
+
+    @Test
+    public void showPanes_hidesBeforeShowing() throws Exception {
+        assertTrue(this.contentPageLibrary.showPanes(this.panes(3, null), this.activity));
+        assertEquals(Arrays.asList("1:beforeHide", "1:afterHide", "3:beforeShow", "3:afterShow"), this.events);
+        assertTrue(this.pages[3].isActive());
+        assertFalse(this.pages[1].isActive());
+    }
+
+    @Test
+    public void showPanes_movesPageFromPaneSwitchingAway() throws Exception {
+        assertTrue(this.contentPageLibrary.showPanes(this.panes(2, 3), this.activity));
+        assertFalse(this.pages[1].isActive());
+        assertTrue(this.pages[2].isActive());
+        assertTrue(this.pages[3].isActive());
+        this.assertShownIn(this.defaultWrapper, this.pages[2]);
+        this.assertShownIn(this.sideWrapper, this.pages[3]);
+    }
+
+    @Test
+    public void showPanes_swapsPagesBetweenPanes() throws Exception {
+        assertTrue(this.contentPageLibrary.showPanes(this.panes(2, 1), this.activity));
+        this.assertShownIn(this.defaultWrapper, this.pages[2]);
+        this.assertShownIn(this.sideWrapper, this.pages[1]);
+        this.contentPageLibrary.dispatchOnReceive(this.activity, new Intent(actionFor(1)));
+        assertEquals(1, this.pages[1].receiveCount);
+    }
+
+    @Test
+    public void showPanes_rejectsPageStayingInOtherPane() throws Exception {
+        assertFalse(this.contentPageLibrary.showPanes(this.panes(2, null), this.activity));
+        assertTrue(this.events.isEmpty());
+        this.assertShownIn(this.defaultWrapper, this.pages[1]);
+        this.assertShownIn(this.sideWrapper, this.pages[2]);
+    }
+
+    @Test
+    public void showPanes_refusedHideKeepsConflictingPane() throws Exception {
+        this.pages[2].refuseHide = true;
+        assertFalse(this.contentPageLibrary.showPanes(this.panes(2, 3), this.activity));
+        assertEquals(Arrays.asList("1:beforeHide", "2:beforeHide", "1:afterHide", "1:beforeShow", "1:afterShow"), this.events);
+        assertFalse(this.pages[3].isActive());
+        this.assertShownIn(this.defaultWrapper, this.pages[1]);
+        this.assertShownIn(this.sideWrapper, this.pages[2]);
+    }
+
+    @Test
+    public void showPanes_refusedShowKeepsCurrentPage() throws Exception {
+        this.pages[3].refuseShow = true;
+        assertFalse(this.contentPageLibrary.showPanes(this.panes(null, 3), this.activity));
+        assertFalse(this.pages[3].isActive());
+        this.assertShownIn(this.sideWrapper, this.pages[2]);
+    }
+
+    @Test
+    public void showPanes_failedPreparationKeepsCurrentPage() throws Exception {
+        this.pages[3].failShow = true;
+        assertFalse(this.contentPageLibrary.showPanes(this.panes(3, null), this.activity));
+        assertFalse(this.pages[3].isActive());
+        this.assertShownIn(this.defaultWrapper, this.pages[1]);
+
+        this.pages[3].failShow = false;
+        assertTrue(this.contentPageLibrary.showPanes(this.panes(3, null), this.activity));
+        this.assertShownIn(this.defaultWrapper, this.pages[3]);
+    }
+
+    @Test
+    public void showPanes_failedPreparationFallsBackToEmptyPageIfCurrentPageMoved() throws Exception {
+        this.pages[2].refuseShow = true;
+        assertFalse(this.contentPageLibrary.showPanes(this.panes(2, 1), this.activity));
+        assertFalse(this.pages[2].isActive());
+        assertEquals(1, this.defaultWrapper.getChildCount());
+        this.contentPageLibrary.dispatchOnClick(this.defaultWrapper.getChildAt(0));
+        assertEquals(0, this.pages[1].clickCount);
+        assertEquals(0, this.pages[2].clickCount);
+        this.assertShownIn(this.sideWrapper, this.pages[1]);
+    }
+
+    /**
+     * Builds the menu item ids to show by pane, leaving out panes with a null id.
+     */
+    private LinkedHashMap<String, Integer> panes(Integer defaultId, Integer sideId) {
+        LinkedHashMap<String, Integer> menuItemResourceIdsByPane = new LinkedHashMap<>();
+        if (defaultId != null) {
+            menuItemResourceIdsByPane.put(ContentPageLibrary.DEFAULT_PANE, defaultId);
+        }
+        if (sideId != null) {
+            menuItemResourceIdsByPane.put(SIDE_PANE, sideId);
+        }
+        return menuItemResourceIdsByPane;
+    }
+
+    /**
+     * Asserts that the content page is shown in the given content wrapper, by clicking into it.
+     */
+    private void assertShownIn(LinearLayout contentWrapper, PanePage page) {
+        assertTrue(page.isActive());
+        assertEquals(1, contentWrapper.getChildCount());
+        int clickCount = page.clickCount;
+        this.contentPageLibrary.dispatchOnClick(contentWrapper.getChildAt(0));
+        assertEquals(clickCount + 1, page.clickCount);
+    }
+}
@@ -0,0 +1,388 @@
+package de.tschebbischeff.lazyui;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Long running local unit test, driving a {@link ContentPageLibrary} with randomized navigation on the development machine (host).
+ * Records allocated bytes per operation, retained heap after garbage collection and violations of the lifecycle invariants.
+ * The report is written to build/reports/soak and is meant to be compared across versions.
+ * Only runs if the system property lazyui.soak.operations is set, e.g. gradlew test -Dlazyui.soak.operations=200000.
+ * The seed can be changed with the system property lazyui.soak.seed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ContentPageLibrarySoakTest {
+
+    private static final int INITIAL_PAGE_COUNT = 50;
+    private static final int MAX_PAGE_ID = 100;
+    private static final int ACTION_COUNT = 5;
+    private static final int HEAP_SAMPLE_INTERVAL = 10000;
+    private static final double REFUSE_PROBABILITY = 0.05;
+    private static final int MAX_REPORTED_VIOLATIONS = 100;
+
+    private static final String OP_SHOW = "show";
+    private static final String OP_PAUSE = "pause";
+    private static final String OP_RESUME = "resume";
+    private static final String OP_CLICK = "click";
+    private static final String OP_RECEIVE = "receive";
+    private static final String OP_ADD = "add";
+    private static final String OP_REMOVE = "remove";
+
+    /**
+     * A generated content page, checking the order of its own lifecycle callbacks.
+     */
+    private class SoakPage extends ContentPage {
+
+        private final int id;
+        private boolean showPending = false;
+        private boolean shown = false;
+        private boolean destroyed = false;
+
+        SoakPage(int id) {
+            this.id = id;
+        }
+
+        private void check(boolean condition, String violation) {
+            if (!condition) {
+                ContentPageLibrarySoakTest.this.addViolation("page " + this.id + ": " + violation);
+            }
+        }
+
+        @Override
+        protected int getLayoutResourceId() {
+            return R.layout.content_page_empty;
+        }
+
+        @Override
+        protected String[] getIntentFilterActions() {
+            return new String[]{actionFor(this.id)};
+        }
+
+        @Override
+        protected void onCreate() {
+            this.check(!this.destroyed, "onCreate after onDestroy");
+        }
+
+        @Override
+        protected boolean onBeforeShow(boolean forced) {
+            this.check(!this.destroyed, "onBeforeShow after onDestroy");
+            this.check(!this.shown, "onBeforeShow while shown");
+            boolean refused = !forced && ContentPageLibrarySoakTest.this.random.nextDouble() < REFUSE_PROBABILITY;
+            this.showPending = !refused;
+            return !refused;
+        }
+
+        @Override
+        protected void onAfterShow() {
+            this.check(this.showPending, "onAfterShow without onBeforeShow");
+            this.showPending = false;
+            this.shown = true;
+        }
+
+        @Override
+        protected boolean onBeforeHide(boolean forced) {
+            this.check(this.shown, "onBeforeHide while hidden");
+            return forced || ContentPageLibrarySoakTest.this.random.nextDouble() >= REFUSE_PROBABILITY;
+        }
+
+        @Override
+        protected void onAfterHide() {
+            this.check(this.shown, "onAfterHide while hidden");
+            this.shown = false;
+        }
+
+        @Override
+        protected void onDestroy() {
+            this.check(!this.shown, "onDestroy while shown");
+            this.destroyed = true;
+        }
+
+        @Override
+        public void onClick(View view) {
+            this.check(this.isActive(), "onClick while inactive");
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            this.check(this.isActive(), "onReceive while inactive");
+            this.check(actionFor(this.id).equals(intent.getAction()), "onReceive of unfiltered action " + intent.getAction());
+        }
+    }
+
+    /**
+     * Statistics of a single kind of operation.
+     */
+    private static class OperationStats {
+        long count = 0;
+        long allocatedBytes = 0;
+        long maxAllocatedBytes = 0;
+    }
+
+    private Random random;
+    private Activity activity;
+    private ContentPageLibrary contentPageLibrary;
+    private HashMap<Integer, SoakPage> pages;
+    private String[] filterActions;
+    private int selectedId;
+    private boolean paused;
+    private ArrayList<String> violations;
+    private long violationCount;
+    private TreeMap<String, OperationStats> operationStats;
+    private ArrayList<Long> retainedHeapSamples;
+    private com.sun.management.ThreadMXBean allocationBean;
+
+    private static String actionFor(int id) {
+        return "de.tschebbischeff.lazyui.soak.ACTION_" + (id % ACTION_COUNT);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.random = new Random(Long.getLong("lazyui.soak.seed", 42));
+        this.activity = Robolectric.setupActivity(Activity.class);
+        LinearLayout contentWrapper = new LinearLayout(this.activity);
+        this.activity.setContentView(contentWrapper);
+        this.contentPageLibrary = new ContentPageLibrary(contentWrapper, LayoutInflater.from(this.activity), new ContentPageSharedData(), new ILazyUiCallbacks() {
+            @Override
+            public void refreshBroadcastReceiverFilter(String[] filterActions) {
+                ContentPageLibrarySoakTest.this.filterActions = filterActions;
+            }
+        });
+        this.pages = new HashMap<>();
+        this.filterActions = new String[0];
+        this.selectedId = 0;
+        this.paused = true;
+        this.violations = new ArrayList<>();
+        this.violationCount = 0;
+        this.operationStats = new TreeMap<>();
+        this.retainedHeapSamples = new ArrayList<>();
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+            this.allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            this.allocationBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        for (int id = 1; id <= INITIAL_PAGE_COUNT; id++) {
+            this.addPage(id);
+        }
+    }
+
+    @Test
+    public void randomNavigation_keepsLifecycleInvariants() throws Exception {
+        Long operations = Long.getLong("lazyui.soak.operations");
+        Assume.assumeNotNull(operations);
+        this.runOperation(OP_RESUME);
+        this.sampleRetainedHeap();
+        for (long i = 1; i <= operations; i++) {
+            this.runOperation(this.nextOperation());
+            this.checkInvariants();
+            if (i % HEAP_SAMPLE_INTERVAL == 0) {
+                this.sampleRetainedHeap();
+            }
+        }
+        this.sampleRetainedHeap();
+        this.writeReport(operations);
+        assertTrue("Lifecycle invariants violated: " + this.violations, this.violations.isEmpty());
+    }
+
+    /**
+     * Picks the next operation, like a user would trigger it: only resuming while paused.
+     */
+    private String nextOperation() {
+        if (this.paused) return OP_RESUME;
+        int roll = this.random.nextInt(100);
+        if (roll < 40) return OP_SHOW;
+        if (roll < 45) return OP_PAUSE;
+        if (roll < 65) return OP_CLICK;
+        if (roll < 85) return OP_RECEIVE;
+        if (roll < 93) return OP_ADD;
+        return OP_REMOVE;
+    }
+
+    /**
+     * Runs a single operation and records the bytes it allocated.
+     * Exceptions thrown by the library are recorded as violations, so the run continues.
+     */
+    private void runOperation(String operation) {
+        long allocatedBefore = this.allocatedBytes();
+        try {
+            this.dispatchOperation(operation);
+        } catch (RuntimeException e) {
+            this.addViolation(operation + ": " + e);
+        }
+        long allocated = this.allocatedBytes() - allocatedBefore;
+        OperationStats stats = this.operationStats.get(operation);
+        if (stats == null) {
+            stats = new OperationStats();
+            this.operationStats.put(operation, stats);
+        }
+        stats.count++;
+        stats.allocatedBytes += allocated;
+        stats.maxAllocatedBytes = Math.max(stats.maxAllocatedBytes, allocated);
+    }
+
+    private void dispatchOperation(String operation) {
+        switch (operation) {
+            case OP_SHOW:
+                int id = 1 + this.random.nextInt(MAX_PAGE_ID);
+                if (this.contentPageLibrary.show(id, this.activity)) {
+                    this.selectedId = id;
+                }
+                break;
+            case OP_PAUSE:
+                this.contentPageLibrary.dispatchOnPause();
+                this.paused = true;
+                break;
+            case OP_RESUME:
+                this.contentPageLibrary.dispatchOnResume();
+                this.paused = false;
+                break;
+            case OP_CLICK:
+                this.contentPageLibrary.dispatchOnClick(this.activity.getWindow().getDecorView());
+                break;
+            case OP_RECEIVE:
+                for (String action : this.filterActions) {
+                    this.contentPageLibrary.dispatchOnReceive(this.activity, new Intent(action));
+                }
+                break;
+            case OP_ADD:
+                this.addPage(1 + this.random.nextInt(MAX_PAGE_ID));
+                break;
+            case OP_REMOVE:
+                this.removePage(1 + this.random.nextInt(MAX_PAGE_ID));
+                break;
+        }
+    }
+
+    private void addPage(int id) {
+        //Replacing a page removes it first
+        this.removePage(id);
+        SoakPage page = new SoakPage(id);
+        this.contentPageLibrary.addContentPage(id, page, this.activity);
+        this.pages.put(id, page);
+    }
+
+    private void removePage(int id) {
+        this.pages.remove(id);
+        if (id == this.selectedId) {
+            //The library falls back to the empty page
+            this.selectedId = 0;
+        }
+        this.contentPageLibrary.removeContentPage(id);
+    }
+
+    /**
+     * Checks the invariants spanning all pages: At most one page is active, which is the selected one while resumed.
+     */
+    private void checkInvariants() {
+        int activePages = 0;
+        for (SoakPage page : this.pages.values()) {
+            if (page.isActive()) {
+                activePages++;
+                if (page.id != this.selectedId) {
+                    this.addViolation("page " + page.id + ": active while page " + this.selectedId + " is selected");
+                }
+            }
+        }
+        if (activePages > 1) {
+            this.addViolation(activePages + " pages active at once");
+        }
+        SoakPage selectedPage = this.pages.get(this.selectedId);
+        if (selectedPage != null && selectedPage.isActive() == this.paused) {
+            this.addViolation("page " + this.selectedId + ": active is " + selectedPage.isActive() + " while paused is " + this.paused);
+        }
+    }
+
+    private void addViolation(String violation) {
+        this.violationCount++;
+        if (this.violations.size() < MAX_REPORTED_VIOLATIONS) {
+            this.violations.add(violation);
+        }
+    }
+
+    private long allocatedBytes() {
+        return this.allocationBean != null ? this.allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Records the used heap after garbage collection.
+     */
+    private void sampleRetainedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            Thread.sleep(20);
+        }
+        this.retainedHeapSamples.add(runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Writes the report as sorted key value pairs, so reports of different versions can be diffed line by line.
+     */
+    private void writeReport(long operations) throws IOException {
+        TreeMap<String, String> report = new TreeMap<>();
+        report.put("operations", String.valueOf(operations));
+        report.put("seed", String.valueOf(Long.getLong("lazyui.soak.seed", 42)));
+        report.put("allocations.measured", String.valueOf(this.allocationBean != null));
+        for (Map.Entry<String, OperationStats> entry : this.operationStats.entrySet()) {
+            OperationStats stats = entry.getValue();
+            String prefix = "op." + entry.getKey() + ".";
+            report.put(prefix + "count", String.valueOf(stats.count));
+            report.put(prefix + "allocatedBytes.mean", String.valueOf(stats.count > 0 ? stats.allocatedBytes / stats.count : 0));
+            report.put(prefix + "allocatedBytes.max", String.valueOf(stats.maxAllocatedBytes));
+        }
+        long firstSample = this.retainedHeapSamples.get(0);
+        long lastSample = this.retainedHeapSamples.get(this.retainedHeapSamples.size() - 1);
+        long maxSample = 0;
+        for (long sample : this.retainedHeapSamples) {
+            maxSample = Math.max(maxSample, sample);
+        }
+        report.put("heap.retainedBytes.start", String.valueOf(firstSample));
+        report.put("heap.retainedBytes.end", String.valueOf(lastSample));
+        report.put("heap.retainedBytes.max", String.valueOf(maxSample));
+        report.put("heap.retainedBytes.growth", String.valueOf(lastSample - firstSample));
+        report.put("violations.count", String.valueOf(this.violationCount));
+        File reportDir = new File("build/reports/soak");
+        if (!reportDir.isDirectory() && !reportDir.mkdirs()) {
+            throw new IOException("Could not create " + reportDir.getAbsolutePath());
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(new File(reportDir, "content-page-library-soak.txt")));
+        try {
+            for (Map.Entry<String, String> entry : report.entrySet()) {
+                writer.println(entry.getKey() + "=" + entry.getValue());
+            }
+            writer.println("heap.retainedBytes.samples=" + this.retainedHeapSamples);
+            for (String violation : this.violations) {
+                writer.println("violation=" + violation);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}